@@ -0,0 +1,97 @@
+package RateLimiter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// Per-client state for the lock-free policies: an open addressing table from client id to a
+// long[] of stateLength, which the policies update with CAS. Keys stay primitive, so a lookup
+// neither boxes nor locks. New clients are inserted under the table's monitor and published with
+// a release store, a growing table through the volatile field. Clients are never removed.
+final class ClientTable{
+    private static final VarHandle STATES = MethodHandles.arrayElementVarHandle(long[][].class);
+
+    // Immutable apart from filling empty slots; replaced as a whole when it grows
+    private static final class Table{
+        final int[] ids;
+        final long[][] states;  // null = empty slot, published after ids[i]
+        final int mask;
+        int size;               // guarded by the ClientTable's monitor
+
+        Table(int capacity){
+            this.ids = new int[capacity];
+            this.states = new long[capacity][];
+            this.mask = capacity - 1;
+        }
+    }
+
+    private final int stateLength;
+    private volatile Table table;
+
+    ClientTable(int stateLength){
+        this.stateLength = stateLength;
+        this.table = new Table(1024);
+    }
+
+    // The client's state, all zeros when it is new
+    long[] stateOf(int id){
+        Table current = table;
+        for(int i = mix(id) & current.mask; ; i = (i + 1) & current.mask){
+            long[] state = (long[]) STATES.getAcquire(current.states, i);
+            if(state == null){
+                return insert(id);
+            }
+            if(current.ids[i] == id){
+                return state;
+            }
+        }
+    }
+
+    synchronized int size(){
+        return table.size;
+    }
+
+    private synchronized long[] insert(int id){
+        Table current = table;
+        int i = mix(id) & current.mask;
+        while(current.states[i] != null){
+            if(current.ids[i] == id){
+                return current.states[i]; // inserted by another thread or found after a resize
+            }
+            i = (i + 1) & current.mask;
+        }
+        if(current.size + 1 > current.ids.length / 2){
+            current = grow(current);
+            table = current;
+            i = mix(id) & current.mask;
+            while(current.states[i] != null){
+                i = (i + 1) & current.mask;
+            }
+        }
+        long[] state = new long[stateLength];
+        current.ids[i] = id;
+        STATES.setRelease(current.states, i, state);
+        current.size++;
+        return state;
+    }
+
+    private static Table grow(Table old){
+        Table grown = new Table(old.ids.length * 2);
+        for(int i = 0; i < old.ids.length; i++){
+            if(old.states[i] != null){
+                int j = mix(old.ids[i]) & grown.mask;
+                while(grown.states[j] != null){
+                    j = (j + 1) & grown.mask;
+                }
+                grown.ids[j] = old.ids[i];
+                grown.states[j] = old.states[i];
+            }
+        }
+        grown.size = old.size;
+        return grown; // published through the volatile table field
+    }
+
+    static int mix(int id){
+        int h = id * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
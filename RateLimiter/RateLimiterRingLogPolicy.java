@@ -0,0 +1,110 @@
+package RateLimiter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+
+// Sliding window log like RateLimiterTimePolicy, without boxing, locks or allocation per call.
+// Each client's log is one long[]: slot 0 counts the calls allowed so far, slots 1..allowedCalls
+// are a ring of the last allowedCalls allowed timestamps, each tagged with its call number
+// ((n + 1) << 32 | timestamp). Call n reuses the slot of call n - allowedCalls, the oldest one in
+// the window, so it is allowed iff that call is more than timeLimit old. Admission claims the
+// call number with a CAS on slot 0 and then writes the slot; the tag tells a later reader whether
+// that write has landed yet.
+// That is 8 bytes per call record instead of a LinkedList node plus a boxed Integer (~40 bytes).
+// Logs live in a ClientTable, so looking a client up neither boxes its id nor locks.
+class RateLimiterRingLogPolicy implements RateLimiterPolicy{
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    int timeLimit;
+    int allowedCalls;
+    private final ClientTable logs;
+
+    RateLimiterRingLogPolicy(int time, int allowedCalls){
+        if(allowedCalls <= 0){
+            throw new IllegalArgumentException("allowedCalls must be greater than zero");
+        }
+        this.timeLimit = time;
+        this.allowedCalls = allowedCalls;
+        this.logs = new ClientTable(1 + allowedCalls);
+    }
+
+    public boolean isAllow(int id, int timestamp) {
+        long[] log = logs.stateOf(id);
+        for(;;){
+            long calls = (long) LONGS.getVolatile(log, 0);
+            int slot = 1 + (int) (calls % allowedCalls);
+            if(calls >= allowedCalls){
+                long oldest = (long) LONGS.getAcquire(log, slot);
+                if((int) (oldest >>> 32) != (int) (calls - allowedCalls + 1)){
+                    Thread.onSpinWait(); // that call's writer is between its CAS and its store
+                    continue;
+                }
+                if(timestamp - (int) oldest <= timeLimit){
+                    if((long) LONGS.getVolatile(log, 0) == calls){
+                        return false; // window full
+                    }
+                    continue;
+                }
+            }
+            if(LONGS.compareAndSet(log, 0, calls, calls + 1)){
+                LONGS.setRelease(log, slot, (calls + 1) << 32 | (timestamp & 0xffffffffL));
+                return true;
+            }
+        }
+    }
+
+    // Number of clients seen so far
+    public int clients(){
+        return logs.size();
+    }
+}
+
+// Checks the ring log policy agrees with RateLimiterTimePolicy call for call, then compares heap
+// use and time for 1M clients each making allowedCalls + 1 calls.
+// Run: java RateLimiter.RingLogDriver
+class RingLogDriver{
+    public static void main(String[] args) {
+        RateLimiterPolicy reference = new RateLimiterTimePolicy(10, 4);
+        RateLimiterPolicy ringLog = new RateLimiterRingLogPolicy(10, 4);
+        Random random = new Random(5);
+        int timestamp = 0;
+        int mismatches = 0;
+        for(int i = 0; i < 100_000; i++){
+            timestamp += random.nextInt(4);
+            int id = random.nextInt(50);
+            if(reference.isAllow(id, timestamp) != ringLog.isAllow(id, timestamp)){
+                mismatches++;
+            }
+        }
+        System.out.println("Decisions differing from RateLimiterTimePolicy: " + mismatches);
+
+        measure("RateLimiterTimePolicy", new RateLimiterTimePolicy(1_000, 4));
+        measure("RateLimiterRingLogPolicy", new RateLimiterRingLogPolicy(1_000, 4));
+    }
+
+    static void measure(String name, RateLimiterPolicy policy){
+        int clients = 1_000_000;
+        long before = usedHeap();
+        long start = System.nanoTime();
+        int allowed = 0;
+        for(int call = 0; call < 5; call++){
+            for(int id = 0; id < clients; id++){
+                if(policy.isAllow(id, call)) allowed++;
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long used = usedHeap() - before;
+        System.out.printf("%-26s allowed %d of %d in %d ms, ~%d bytes per client%n",
+                name, allowed, 5 * clients, millis, used / clients);
+        policy.isAllow(0, 0); // keep it reachable until measured
+    }
+
+    static long usedHeap(){
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,256 @@
+package RateLimiter;
+
+import java.util.*;
+
+// Sliding window counter: instead of a log of calls, each client keeps the count of the previous
+// and of the current fixed window, and a call is allowed iff
+//     previous * (share of the previous window still inside the sliding window) + current + permits
+// stays within allowedCalls. It assumes the previous window's calls were spread evenly, which
+// makes it approximate, but the state is one long per client whatever allowedCalls is:
+//     window index (32 bits) | previous count (16 bits) | current count (16 bits)
+// Meant for very many clients with composite long keys, e.g. a 64-bit hash of (IP, API key, route).
+// Clients live in lock-striped open addressing tables of primitive key and state arrays, 16 bytes
+// a slot, kept 62-80% full. A client whose windows are both over is stale: its slot is reused by
+// the next new client probing past it, and stale slots are dropped whenever a segment rehashes.
+// State 0 marks an empty slot; a stored client always has a current count of at least 1.
+class RateLimiterSlidingCounterPolicy implements WeightedRateLimiterPolicy{
+    static final int MAX_CALLS = 0xffff;
+    private static final int MIN_CAPACITY = 16;
+
+    private static final class Segment{
+        long[] keys;
+        long[] states;
+        int used;   // slots holding a client, stale ones included
+
+        Segment(int capacity){
+            this.keys = new long[capacity];
+            this.states = new long[capacity];
+        }
+    }
+
+    int window;
+    int allowedCalls;
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    RateLimiterSlidingCounterPolicy(int window, int allowedCalls){
+        this(window, allowedCalls, 64);
+    }
+
+    RateLimiterSlidingCounterPolicy(int window, int allowedCalls, int concurrencyLevel){
+        if(window <= 0 || allowedCalls <= 0 || allowedCalls > MAX_CALLS){
+            throw new IllegalArgumentException("window must be positive and allowedCalls between 1 and " + MAX_CALLS);
+        }
+        if(concurrencyLevel <= 0){
+            throw new IllegalArgumentException("Concurrency level must be greater than zero");
+        }
+        this.window = window;
+        this.allowedCalls = allowedCalls;
+        int segmentCount = 1;
+        while(segmentCount < concurrencyLevel){
+            segmentCount <<= 1;
+        }
+        this.segments = new Segment[segmentCount];
+        for(int i = 0; i < segmentCount; i++){
+            segments[i] = new Segment(MIN_CAPACITY);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    public boolean isAllow(int id, int timestamp) {
+        return isAllow((long) id, timestamp, 1);
+    }
+
+    @Override
+    public boolean isAllow(int id, int timestamp, int permits) {
+        return isAllow((long) id, timestamp, permits);
+    }
+
+    public boolean isAllow(long key, int timestamp) {
+        return isAllow(key, timestamp, 1);
+    }
+
+    public boolean isAllow(long key, int timestamp, int permits) {
+        if(permits <= 0){
+            throw new IllegalArgumentException("permits must be greater than zero");
+        }
+        long hash = mix(key);
+        Segment segment = segments[(int) hash & segmentMask];
+        int windowIndex = Math.floorDiv(timestamp, window);
+        int elapsed = Math.floorMod(timestamp, window);
+        synchronized(segment){
+            int capacity = segment.keys.length;
+            int reusable = -1;
+            int i = indexOf(hash, capacity);
+            for(;;){
+                long state = segment.states[i];
+                if(state == 0){
+                    break;
+                }
+                if(segment.keys[i] == key){
+                    return admit(segment, i, state, windowIndex, elapsed, permits);
+                }
+                if(reusable < 0 && isStale(state, windowIndex)){
+                    reusable = i;
+                }
+                i = i + 1 == capacity ? 0 : i + 1;
+            }
+            if(permits > allowedCalls){
+                return false;
+            }
+            if(reusable >= 0){
+                i = reusable; // a stale client's slot, used stays the same
+            }
+            else{
+                segment.used++;
+            }
+            segment.keys[i] = key;
+            segment.states[i] = pack(windowIndex, 0, permits);
+            if(segment.used > capacity - capacity / 5){
+                rehash(segment, windowIndex);
+            }
+            return true;
+        }
+    }
+
+    // Number of slots over all segments, 16 bytes each
+    public long slots(){
+        long slots = 0;
+        for(Segment segment : segments){
+            synchronized(segment){
+                slots += segment.keys.length;
+            }
+        }
+        return slots;
+    }
+
+    // Must hold the segment's lock
+    private boolean admit(Segment segment, int i, long state, int windowIndex, int elapsed, int permits){
+        int stored = (int) (state >>> 32);
+        int previous = (int) (state >>> 16) & 0xffff;
+        int current = (int) state & 0xffff;
+        int age = windowIndex - stored;
+        if(age < 0){
+            windowIndex = stored;   // a late call counts against the newest window
+            elapsed = 0;
+        }
+        else if(age == 1){
+            previous = current;
+            current = 0;
+        }
+        else if(age > 1){
+            previous = 0;
+            current = 0;
+        }
+        // previous * (window - elapsed) / window + current + permits <= allowedCalls, kept integral
+        long weighted = (long) previous * (window - elapsed) + (long) (current + permits) * window;
+        if(weighted > (long) allowedCalls * window){
+            return false;
+        }
+        segment.states[i] = pack(windowIndex, previous, current + permits);
+        return true;
+    }
+
+    // Rebuilds the segment without its stale clients, sized so the rest fill it to 62%
+    private void rehash(Segment segment, int windowIndex){
+        long[] keys = segment.keys;
+        long[] states = segment.states;
+        int live = 0;
+        for(long state : states){
+            if(state != 0 && !isStale(state, windowIndex)){
+                live++;
+            }
+        }
+        int capacity = Math.max(MIN_CAPACITY, live + live * 3 / 5 + 1);
+        segment.keys = new long[capacity];
+        segment.states = new long[capacity];
+        segment.used = live;
+        for(int j = 0; j < keys.length; j++){
+            if(states[j] != 0 && !isStale(states[j], windowIndex)){
+                int i = indexOf(mix(keys[j]), capacity);
+                while(segment.states[i] != 0){
+                    i = i + 1 == capacity ? 0 : i + 1;
+                }
+                segment.keys[i] = keys[j];
+                segment.states[i] = states[j];
+            }
+        }
+    }
+
+    // Both of the client's windows are over, it no longer limits anything
+    private static boolean isStale(long state, int windowIndex){
+        return windowIndex - (int) (state >>> 32) > 1;
+    }
+
+    private static long pack(int windowIndex, int previous, int current){
+        return (long) windowIndex << 32 | (long) previous << 16 | current;
+    }
+
+    // Upper hash bits scaled to the capacity, which need not be a power of two
+    private static int indexOf(long hash, int capacity){
+        return (int) (((hash >>> 32) * capacity) >>> 32);
+    }
+
+    static long mix(long key){
+        long h = key * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 32;
+        h *= 0xd6e8feb86659fd93L;
+        return h ^ (h >>> 32);
+    }
+}
+
+// Compares the sliding window counter with the exact log of RateLimiterTimePolicy, shows the
+// memory per client for 2M clients, and that stale clients give their slots back to new ones.
+// Run: java -Xmx1g RateLimiter.SlidingCounterDriver
+class SlidingCounterDriver{
+    public static void main(String[] args) {
+        RateLimiterPolicy exact = new RateLimiterTimePolicy(100, 50);
+        RateLimiterPolicy counter = new RateLimiterSlidingCounterPolicy(100, 50);
+        Random random = new Random(11);
+        int exactAllowed = 0;
+        int counterAllowed = 0;
+        int disagreements = 0;
+        int timestamp = 0;
+        for(int i = 0; i < 1_000_000; i++){
+            timestamp += random.nextInt(10) == 0 ? 1 : 0;
+            int id = random.nextInt(20);
+            boolean a = exact.isAllow(id, timestamp);
+            boolean b = counter.isAllow(id, timestamp);
+            if(a) exactAllowed++;
+            if(b) counterAllowed++;
+            if(a != b) disagreements++;
+        }
+        System.out.printf("Exact log allowed %d, sliding counter %d (%.1f%% of decisions differ)%n",
+                exactAllowed, counterAllowed, 100.0 * disagreements / 1_000_000);
+
+        RateLimiterSlidingCounterPolicy policy = new RateLimiterSlidingCounterPolicy(60, 100);
+        int clients = 2_000_000;
+        long before = usedHeap();
+        long start = System.nanoTime();
+        for(int round = 0; round < 3; round++){
+            for(int id = 0; id < clients; id++){
+                policy.isAllow(((long) id << 32) | 0x5eed, round);
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long used = usedHeap() - before;
+        System.out.printf("%d clients: %d calls in %d ms, %.1f bytes per client in the tables, ~%d measured%n",
+                clients, 3L * clients, millis, 16.0 * policy.slots() / clients, used / clients);
+
+        // A new set of clients every window: stale ones are reclaimed, the tables stop growing
+        for(int w = 1; w <= 20; w++){
+            for(int id = 0; id < 100_000; id++){
+                policy.isAllow(((long) w << 40) | id, 1_000 + w * 60);
+            }
+        }
+        System.out.println("After 20 windows of 100k fresh clients each: " + policy.slots() + " slots");
+    }
+
+    static long usedHeap(){
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,162 @@
+package RateLimiter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+
+// Token bucket: a client's bucket holds up to capacity permits and refills by permitsPerInterval
+// every interval time units; a call taking n permits is allowed iff n are in the bucket.
+// capacity sets the burst, the refill rate the sustained rate, and weighted calls make it a limit
+// on bytes or cost instead of calls.
+// State is one long per client, updated with CAS: last timestamp << 32 | deficit, where deficit is
+// how far the bucket is below full in 1/interval permits, so refills stay exact integers and a
+// new client (all zeros) starts with a full bucket.
+class RateLimiterTokenBucketPolicy implements WeightedRateLimiterPolicy{
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    int capacity;
+    int permitsPerInterval;
+    int interval;
+    private final long scaledCapacity;
+    private final ClientTable buckets;
+
+    RateLimiterTokenBucketPolicy(int capacity, int permitsPerInterval, int interval){
+        if(capacity <= 0 || permitsPerInterval <= 0 || interval <= 0){
+            throw new IllegalArgumentException("capacity, permitsPerInterval and interval must be greater than zero");
+        }
+        if((long) capacity * interval > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("capacity * interval must fit in an int");
+        }
+        this.capacity = capacity;
+        this.permitsPerInterval = permitsPerInterval;
+        this.interval = interval;
+        this.scaledCapacity = (long) capacity * interval;
+        this.buckets = new ClientTable(1);
+    }
+
+    public boolean isAllow(int id, int timestamp) {
+        return isAllow(id, timestamp, 1);
+    }
+
+    @Override
+    public boolean isAllow(int id, int timestamp, int permits) {
+        if(permits <= 0){
+            throw new IllegalArgumentException("permits must be greater than zero");
+        }
+        long[] bucket = buckets.stateOf(id);
+        long needed = (long) permits * interval;
+        for(;;){
+            long state = (long) LONGS.getVolatile(bucket, 0);
+            int last = (int) (state >>> 32);
+            long elapsed = Math.max(0, (long) timestamp - last); // late callers do not move time back
+            long deficit = Math.max(0, (state & 0xffffffffL) - elapsed * permitsPerInterval);
+            if(deficit + needed > scaledCapacity){
+                return false;
+            }
+            long next = (long) Math.max(timestamp, last) << 32 | (deficit + needed);
+            if(LONGS.compareAndSet(bucket, 0, state, next)){
+                return true;
+            }
+        }
+    }
+}
+
+// Generic cell rate algorithm, the token bucket above kept as a single theoretical arrival time
+// (TAT): each permit pushes TAT one emission interval (interval / permitsPerInterval) further, and
+// a call is allowed iff its new TAT is at most capacity emission intervals ahead of now.
+// As long as a client's timestamps never decrease, decisions match the token bucket call for
+// call. A call older than the client's last one is not: the token bucket treats it as arriving
+// at the last timestamp, GCRA judges it at its own, earlier time and can refuse a call the
+// token bucket allows. The state is one timestamp instead of two fields, so no packing and no
+// clamping of elapsed time. Time is kept in units of 1/permitsPerInterval so the emission
+// interval is an exact integer.
+class RateLimiterGcraPolicy implements WeightedRateLimiterPolicy{
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    int capacity;
+    int permitsPerInterval;
+    int interval;
+    private final long burst;   // capacity emission intervals, scaled
+    private final ClientTable arrivals;
+
+    RateLimiterGcraPolicy(int capacity, int permitsPerInterval, int interval){
+        if(capacity <= 0 || permitsPerInterval <= 0 || interval <= 0){
+            throw new IllegalArgumentException("capacity, permitsPerInterval and interval must be greater than zero");
+        }
+        this.capacity = capacity;
+        this.permitsPerInterval = permitsPerInterval;
+        this.interval = interval;
+        this.burst = (long) capacity * interval;
+        this.arrivals = new ClientTable(1);
+    }
+
+    public boolean isAllow(int id, int timestamp) {
+        return isAllow(id, timestamp, 1);
+    }
+
+    @Override
+    public boolean isAllow(int id, int timestamp, int permits) {
+        if(permits <= 0){
+            throw new IllegalArgumentException("permits must be greater than zero");
+        }
+        long[] arrival = arrivals.stateOf(id);
+        long now = (long) timestamp * permitsPerInterval;
+        long increment = (long) permits * interval;
+        for(;;){
+            long tat = (long) LONGS.getVolatile(arrival, 0);
+            long next = Math.max(tat, now) + increment;
+            if(next - now > burst){
+                return false;
+            }
+            if(LONGS.compareAndSet(arrival, 0, tat, next)){
+                return true;
+            }
+        }
+    }
+}
+
+// Checks token bucket and GCRA agree on a random trace of weighted calls with non-decreasing
+// timestamps, shows where they part on a late call, then shows a burst being absorbed and the
+// sustained rate afterwards.
+// Run: java RateLimiter.TokenBucketDriver
+class TokenBucketDriver{
+    public static void main(String[] args) {
+        WeightedRateLimiterPolicy bucket = new RateLimiterTokenBucketPolicy(100, 30, 7);
+        WeightedRateLimiterPolicy gcra = new RateLimiterGcraPolicy(100, 30, 7);
+        Random random = new Random(9);
+        int timestamp = 0;
+        int mismatches = 0;
+        int allowed = 0;
+        for(int i = 0; i < 1_000_000; i++){
+            timestamp += random.nextInt(40) == 0 ? 1 : 0;
+            int id = random.nextInt(5);
+            int permits = 1 + random.nextInt(20);
+            boolean decision = bucket.isAllow(id, timestamp, permits);
+            if(decision != gcra.isAllow(id, timestamp, permits)){
+                mismatches++;
+            }
+            if(decision) allowed++;
+        }
+        System.out.println("Allowed " + allowed + " of 1000000 weighted calls, token bucket vs GCRA mismatches: " + mismatches);
+
+        // One permit at t=10, then 5 more stamped t=0
+        WeightedRateLimiterPolicy lateBucket = new RateLimiterTokenBucketPolicy(10, 1, 1);
+        WeightedRateLimiterPolicy lateGcra = new RateLimiterGcraPolicy(10, 1, 1);
+        lateBucket.isAllow(0, 10, 1);
+        lateGcra.isAllow(0, 10, 1);
+        System.out.println("Late call allowed by token bucket? " + lateBucket.isAllow(0, 0, 5)
+                + ", by GCRA? " + lateGcra.isAllow(0, 0, 5)); // true, false
+
+        // 1 KB/s sustained with 4 KB of burst, by bytes: a 16 KB upload at t=0, then 1 KB every second
+        WeightedRateLimiterPolicy bytes = new RateLimiterGcraPolicy(4_096, 1_024, 1);
+        int sent = 0;
+        for(int chunk = 0; chunk < 16; chunk++){
+            if(bytes.isAllow(0, 0, 1_024)) sent += 1_024;
+        }
+        System.out.println("Burst at t=0: sent " + sent + " of 16384 bytes");
+        for(int t = 1; t <= 3; t++){
+            System.out.println("t=" + t + " 1 KB allowed? " + bytes.isAllow(0, t, 1_024)
+                    + ", 2 KB more allowed? " + bytes.isAllow(0, t, 2_048));
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package RateLimiter;
+
+// A policy that can also meter weighted calls, e.g. permits = bytes sent; all or nothing.
+// Policies that count calls only implement RateLimiterPolicy, so a weighted call on them does
+// not compile.
+interface WeightedRateLimiterPolicy extends RateLimiterPolicy{
+    public boolean isAllow(int id, int timestamp, int permits);
+}
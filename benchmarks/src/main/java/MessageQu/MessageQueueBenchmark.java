@@ -0,0 +1,29 @@
+package MessageQu;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Publish + consume round trips on the shared MessageQueue. Every thread publishes before it
+// consumes, so there is always a message for each consumer and take never blocks for good.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageQueueBenchmark {
+    MessageQueue queue;
+    Message message;
+
+    @Setup
+    public void setup() {
+        queue = new MessageQueue();
+        message = new Message("id", "payload");
+    }
+
+    @Benchmark
+    public Message publishAndConsume() {
+        queue.publish(message);
+        return queue.consume();
+    }
+}
@@ -0,0 +1,58 @@
+package RateLimiter;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// isAllow throughput per rate limiter policy. With one client every thread contends on the same
+// per-client state, with many clients they mostly do not; the gap is what per-client locking buys.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+    @Param({"time", "ring-log", "token-bucket", "gcra", "sliding-counter"})
+    String policy;
+
+    @Param({"1", "1024"})
+    int clients;
+
+    RateLimiterPolicy rateLimiterPolicy;
+
+    @Setup
+    public void setup() {
+        switch (policy) {
+            case "time":
+                rateLimiterPolicy = new RateLimiterTimePolicy(1_000, 100);
+                break;
+            case "ring-log":
+                rateLimiterPolicy = new RateLimiterRingLogPolicy(1_000, 100);
+                break;
+            case "token-bucket":
+                rateLimiterPolicy = new RateLimiterTokenBucketPolicy(100, 100, 1_000);
+                break;
+            case "gcra":
+                rateLimiterPolicy = new RateLimiterGcraPolicy(100, 100, 1_000);
+                break;
+            case "sliding-counter":
+                rateLimiterPolicy = new RateLimiterSlidingCounterPolicy(1_000, 100);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown policy " + policy);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int client;
+    }
+
+    @Benchmark
+    public boolean isAllow(ThreadState state) {
+        // A millisecond clock, so windows keep sliding and old timestamps are dropped
+        int timestamp = (int) (System.nanoTime() / 1_000_000);
+        state.client = state.client + 1 == clients ? 0 : state.client + 1;
+        return rateLimiterPolicy.isAllow(state.client, timestamp);
+    }
+}
@@ -0,0 +1,34 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the benchmarks matching a regex at 1, 2, 4, ... 64 threads and writes all results into
+// one JMH JSON file (each entry records its thread count).
+// Run: java -cp benchmarks/target/benchmarks.jar benchmarks.ThreadSweep [regex] [out.json] [max threads]
+public class ThreadSweep {
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*";
+        String output = args.length > 1 ? args[1] : "jmh-thread-sweep.json";
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        List<RunResult> results = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .build();
+            Collection<RunResult> run = new Runner(options).run();
+            results.addAll(run);
+        }
+        ResultFormatFactory.getInstance(ResultFormatType.JSON, output).writeOut(results);
+        System.out.println("Wrote " + results.size() + " results to " + output);
+    }
+}
@@ -0,0 +1,77 @@
+package lru;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Mixed get/put throughput of ConcurrentCache per eviction policy and read share. Keys follow a
+// skewed distribution over 4x the capacity, so both hits and evicting puts are exercised.
+// Run across thread counts with benchmarks.ThreadSweep, or once with -t <threads>.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentCacheBenchmark {
+    static final int CAPACITY = 10_000;
+    static final int KEY_MASK = (1 << 16) - 1;
+
+    @Param({"linked-lru", "clock", "wtinylfu"})
+    String policy;
+
+    @Param({"100", "90", "50"})
+    int readPercent;
+
+    ConcurrentCache<Integer, Integer> cache;
+    Integer[] keys;
+
+    @Setup
+    public void setup() {
+        EvictionPolicy<Integer> evictionPolicy;
+        switch (policy) {
+            case "linked-lru":
+                evictionPolicy = new LinkedLRUEvictionPolicy<>();
+                break;
+            case "clock":
+                evictionPolicy = new ClockEvictionPolicy<>();
+                break;
+            case "wtinylfu":
+                evictionPolicy = new WTinyLfuEvictionPolicy<>(CAPACITY);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown policy " + policy);
+        }
+        cache = new ConcurrentCache<>(CAPACITY, evictionPolicy);
+        keys = skewedKeys(KEY_MASK + 1, 4 * CAPACITY);
+        for (Integer key : keys) {
+            cache.put(key, key);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final SplittableRandom random = new SplittableRandom();
+        int index = random.nextInt(KEY_MASK + 1);
+    }
+
+    @Benchmark
+    public Integer getOrPut(ThreadState state) {
+        Integer key = keys[state.index++ & KEY_MASK];
+        if (state.random.nextInt(100) < readPercent) {
+            return cache.get(key);
+        }
+        cache.put(key, key);
+        return key;
+    }
+
+    // count keys in [0, range), low keys far more likely, as boxed Integers made up front
+    static Integer[] skewedKeys(int count, int range) {
+        SplittableRandom random = new SplittableRandom(42);
+        Integer[] keys = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (int) (range * Math.pow(random.nextDouble(), 3));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,62 @@
+package lru_self;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Mixed get/put throughput of LruCache (one monitor for the whole cache) per policy and read
+// share, with the same key distribution as lru.ConcurrentCacheBenchmark so the two compare.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LruCacheBenchmark {
+    static final int CAPACITY = 10_000;
+    static final int KEY_MASK = (1 << 16) - 1;
+
+    @Param({"lru", "arc"})
+    String policy;
+
+    @Param({"100", "90", "50"})
+    int readPercent;
+
+    LruCache<Integer, Integer> cache;
+    Integer[] keys;
+
+    @Setup
+    public void setup() {
+        EvictionPolicy<Integer, Integer> evictionPolicy;
+        if (policy.equals("lru")) {
+            evictionPolicy = new LRUEvictionPolicy<Integer, Integer>();
+        } else if (policy.equals("arc")) {
+            evictionPolicy = new ArcEvictionPolicy<Integer, Integer>(CAPACITY);
+        } else {
+            throw new IllegalArgumentException("Unknown policy " + policy);
+        }
+        cache = new LruCache<>(new MapStorage<Integer, Integer>(CAPACITY), evictionPolicy, CAPACITY);
+        SplittableRandom random = new SplittableRandom(42);
+        keys = new Integer[KEY_MASK + 1];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (int) (4 * CAPACITY * Math.pow(random.nextDouble(), 3));
+            cache.put(keys[i], keys[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final SplittableRandom random = new SplittableRandom();
+        int index = random.nextInt(KEY_MASK + 1);
+    }
+
+    @Benchmark
+    public Integer getOrPut(ThreadState state) {
+        Integer key = keys[state.index++ & KEY_MASK];
+        if (state.random.nextInt(100) < readPercent) {
+            return cache.get(key);
+        }
+        cache.put(key, key);
+        return key;
+    }
+}
@@ -0,0 +1,29 @@
+package pub_sub;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Publish + consume round trips on one Topic without subscribers (they print every message),
+// so this measures the topic's lock around its queue.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicBenchmark {
+    Topic topic;
+    Message message;
+
+    @Setup
+    public void setup() {
+        topic = new Topic("benchmark");
+        message = new Message("payload");
+    }
+
+    @Benchmark
+    public Message publishAndConsume() {
+        topic.publishMessage(message);
+        return topic.consumeMessage();
+    }
+}
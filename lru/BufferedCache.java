@@ -0,0 +1,230 @@
+package lru;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.Consumer;
+
+// High-concurrency cache mode: the data lives in a ConcurrentHashMap that is read without locks,
+// and the eviction policy is only touched by one thread at a time, replaying recorded events.
+//  - get records the hit in a lossy striped ring buffer; if the buffer is full the event is dropped,
+//    which only costs a little LRU precision.
+//  - put and invalidate record the changed key in a bounded buffer; these events are never
+//    dropped, a writer that finds the buffer full drains it itself.
+//  - whoever wins tryLock on the policy lock drains both buffers and evicts down to capacity.
+// Readers therefore never wait on the policy, and the size can overshoot capacity by the writes
+// that are still buffered.
+class BufferedCache<K, V> implements Cache<K, V> {
+    private static final int WRITE_BUFFER_SIZE = 128;
+
+    private final ConcurrentHashMap<K, V> map;
+    private final EvictionPolicy<K> evictionPolicy;
+    private final int capacity;
+    private final ReadBuffer<K> readBuffer;
+    private final BlockingQueue<K> writeBuffer;
+    private final ReentrantLock evictionLock;
+
+    public BufferedCache(int capacity, EvictionPolicy<K> evictionPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.capacity = capacity;
+        this.evictionPolicy = evictionPolicy;
+        this.map = new ConcurrentHashMap<>();
+        this.readBuffer = new ReadBuffer<>(Runtime.getRuntime().availableProcessors() * 4);
+        this.writeBuffer = new ArrayBlockingQueue<>(WRITE_BUFFER_SIZE);
+        this.evictionLock = new ReentrantLock();
+    }
+
+    @Override
+    public V get(K key) {
+        V value = map.get(key);
+        if (value != null && readBuffer.offer(key)) {
+            tryDrain(); // the stripe filled up, time to replay it
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        map.put(key, value);
+        recordWrite(key);
+    }
+
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        for (K key : keys) {
+            if (map.remove(key) != null) {
+                recordWrite(key);
+            }
+        }
+    }
+
+    private void recordWrite(K key) {
+        while (!writeBuffer.offer(key)) {
+            // Back-pressure: the buffer is full, so help drain it before recording this write
+            evictionLock.lock();
+            try {
+                drainBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        tryDrain();
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    // Applies all pending events now, e.g. before reading size() in a test
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void tryDrain() {
+        if (evictionLock.tryLock()) {
+            try {
+                drainBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    // Must hold evictionLock
+    private void drainBuffers() {
+        readBuffer.drainTo(key -> {
+            if (map.containsKey(key)) { // skip hits on keys evicted since they were recorded
+                evictionPolicy.keyAccessed(key);
+            }
+        });
+        K key;
+        while ((key = writeBuffer.poll()) != null) {
+            // The event only says the key changed; the map tells whether it is there now
+            if (map.containsKey(key)) {
+                evictionPolicy.keyAccessed(key);
+            } else {
+                evictionPolicy.keyRemoved(key);
+            }
+        }
+        while (map.size() > capacity) {
+            K evictedKey = evictionPolicy.evictKey();
+            if (evictedKey == null) {
+                break;
+            }
+            map.remove(evictedKey);
+        }
+    }
+
+    // Striped set of lossy ring buffers. A thread picks its stripe from its id, so threads rarely
+    // share a stripe. Producers claim a slot with a CAS on the stripe's tail; the single consumer
+    // (the thread holding evictionLock) advances the head.
+    static final class ReadBuffer<K> {
+        private static final int STRIPE_SIZE = 16; // power of two
+        private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+
+        private final Stripe<K>[] stripes;
+        private final int mask;
+
+        @SuppressWarnings("unchecked")
+        ReadBuffer(int minStripes) {
+            int count = 1;
+            while (count < minStripes) {
+                count <<= 1;
+            }
+            stripes = (Stripe<K>[]) new Stripe<?>[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new Stripe<>();
+            }
+            mask = count - 1;
+        }
+
+        // Returns true when the stripe is full and should be drained
+        boolean offer(K key) {
+            Stripe<K> stripe = stripes[(int) mix(Thread.currentThread().getId()) & mask];
+            long head = stripe.head; // racy read, only used to detect a full stripe
+            long tail = stripe.tail.get();
+            if (tail - head >= STRIPE_SIZE) {
+                return true; // full: drop the event
+            }
+            if (stripe.tail.compareAndSet(tail, tail + 1)) {
+                stripe.slots.lazySet((int) tail & STRIPE_MASK, key);
+                return tail + 1 - head >= STRIPE_SIZE;
+            }
+            return false; // lost the race: drop the event rather than spin
+        }
+
+        void drainTo(Consumer<K> consumer) {
+            for (Stripe<K> stripe : stripes) {
+                long head = stripe.head;
+                long tail = stripe.tail.get();
+                while (head < tail) {
+                    int index = (int) head & STRIPE_MASK;
+                    K key = stripe.slots.get(index);
+                    if (key == null) {
+                        break; // slot claimed but not yet published
+                    }
+                    stripe.slots.lazySet(index, null);
+                    consumer.accept(key);
+                    head++;
+                }
+                stripe.head = head;
+            }
+        }
+
+        private static long mix(long x) {
+            x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+            return x ^ (x >>> 33);
+        }
+
+        static final class Stripe<K> {
+            final AtomicReferenceArray<K> slots = new AtomicReferenceArray<>(STRIPE_SIZE);
+            final AtomicLong tail = new AtomicLong();
+            volatile long head;
+        }
+    }
+}
+
+// Hit latency of ConcurrentCache vs BufferedCache as the number of reader threads grows.
+// Run: java lru.BufferedCacheDriver
+class BufferedCacheDriver {
+    public static void main(String[] args) throws InterruptedException {
+        int capacity = 50_000;
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            Cache<Integer, Integer> locked = new ConcurrentCache<>(capacity, new LinkedLRUEvictionPolicy<>());
+            Cache<Integer, Integer> buffered = new BufferedCache<>(capacity, new LinkedLRUEvictionPolicy<>());
+            System.out.printf("%2d threads  ConcurrentCache %6.1f ns/get   BufferedCache %6.1f ns/get%n",
+                    threads, nanosPerGet(locked, capacity, threads), nanosPerGet(buffered, capacity, threads));
+        }
+    }
+
+    static double nanosPerGet(Cache<Integer, Integer> cache, int capacity, int threads) throws InterruptedException {
+        for (int i = 0; i < capacity; i++) {
+            cache.put(i, i);
+        }
+        int getsPerThread = 200_000;
+        AtomicLong totalNanos = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                long start = System.nanoTime();
+                for (int i = 0; i < getsPerThread; i++) {
+                    cache.get(random.nextInt(capacity));
+                }
+                totalNanos.addAndGet(System.nanoTime() - start);
+            });
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        return (double) totalNanos.get() / ((long) threads * getsPerThread);
+    }
+}
@@ -0,0 +1,62 @@
+package lru;
+
+import java.util.*;
+
+// Batched getAll vs a loop of single gets, 100 keys per request, on several threads.
+// Run: java lru.BulkOperationsDriver
+public class BulkOperationsDriver {
+    private static final int BATCH = 100;
+
+    public static void main(String[] args) throws InterruptedException {
+        int capacity = 100_000;
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        List<Cache<Integer, Integer>> caches = List.of(
+                new ConcurrentCache<>(capacity, new LinkedLRUEvictionPolicy<>()),
+                new SegmentedCache<>(capacity, 16));
+        for (Cache<Integer, Integer> cache : caches) {
+            Map<Integer, Integer> entries = new HashMap<>();
+            for (int i = 0; i < capacity; i++) {
+                entries.put(i, i);
+            }
+            cache.putAll(entries);
+            String name = cache.getClass().getSimpleName();
+            for (int round = 0; round < 3; round++) { // first rounds are warm-up
+                double looped = measure(cache, threads, false);
+                double batched = measure(cache, threads, true);
+                if (round == 2) {
+                    System.out.printf("%-16s %d threads  looped get %,12.0f keys/s   getAll %,12.0f keys/s%n",
+                            name, threads, looped, batched);
+                }
+            }
+        }
+    }
+
+    static double measure(Cache<Integer, Integer> cache, int threads, boolean batched) throws InterruptedException {
+        int requestsPerThread = 5_000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                List<Integer> keys = new ArrayList<>(BATCH);
+                for (int r = 0; r < requestsPerThread; r++) {
+                    keys.clear();
+                    for (int i = 0; i < BATCH; i++) {
+                        keys.add(random.nextInt(120_000)); // some misses
+                    }
+                    if (batched) {
+                        cache.getAll(keys);
+                    } else {
+                        for (Integer key : keys) {
+                            cache.get(key);
+                        }
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        return (double) threads * requestsPerThread * BATCH * 1_000_000_000L / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,40 @@
+package lru;
+
+import java.util.*;
+
+// Cache interface adhering to the Dependency Inversion Principle
+interface Cache<K, V> {
+    V get(K key);
+    void put(K key, V value);
+    // Drops the keys from the cache
+    void invalidateAll(Iterable<? extends K> keys);
+
+    // Batch lookup, returns only the hits. Implementations override it to take their locks once
+    // per batch instead of once per key.
+    default Map<K, V> getAll(Iterable<? extends K> keys) {
+        Map<K, V> hits = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                hits.put(key, value);
+            }
+        }
+        return hits;
+    }
+
+    default void putAll(Map<? extends K, ? extends V> entries) {
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    default void invalidate(K key) {
+        invalidateAll(Collections.singletonList(key));
+    }
+
+    // Lookup that is not an access: implementations leave the eviction order and the statistics
+    // alone. The default has no such path and falls back to get.
+    default V peek(K key) {
+        return get(key);
+    }
+}
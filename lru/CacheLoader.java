@@ -0,0 +1,21 @@
+package lru;
+
+import java.util.*;
+
+// Computes values for keys missing from a LoadingCache
+interface CacheLoader<K, V> {
+    V load(K key) throws Exception;
+
+    // Bulk load; keys the backend does not know can be left out of the result.
+    // Override when the backend has a batch call, the default loads one by one.
+    default Map<K, V> loadAll(Set<? extends K> keys) throws Exception {
+        Map<K, V> result = new HashMap<>();
+        for (K key : keys) {
+            V value = load(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+}
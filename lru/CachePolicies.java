@@ -0,0 +1,66 @@
+package lru;
+
+import java.util.*;
+import simulator.CachePolicy;
+
+// Adapts this package's eviction policies to the simulator. The adapter only tracks which keys
+// are resident and drives the policy the way ConcurrentCache does (admit, evictKey, keyAccessed),
+// without the cache's locking, so the simulator measures the policy itself.
+public final class CachePolicies {
+    private CachePolicies() {
+    }
+
+    public static CachePolicy lru(int capacity) {
+        return new Adapter(capacity, new LRUEvictionPolicy<>());
+    }
+
+    public static CachePolicy linkedLru(int capacity) {
+        return new Adapter(capacity, new LinkedLRUEvictionPolicy<>());
+    }
+
+    public static CachePolicy clock(int capacity) {
+        return new Adapter(capacity, new ClockEvictionPolicy<>());
+    }
+
+    public static CachePolicy wTinyLfu(int capacity) {
+        return new Adapter(capacity, new WTinyLfuEvictionPolicy<>(capacity));
+    }
+
+    // TinyLFU without the admission window: every new key must beat the victim to get in
+    public static CachePolicy tinyLfu(int capacity) {
+        return new Adapter(capacity, new WTinyLfuEvictionPolicy<>(capacity, 0));
+    }
+
+    private static final class Adapter implements CachePolicy {
+        private final int capacity;
+        private final EvictionPolicy<Long> policy;
+        private final Set<Long> resident;
+
+        Adapter(int capacity, EvictionPolicy<Long> policy) {
+            this.capacity = capacity;
+            this.policy = policy;
+            this.resident = new HashSet<>();
+        }
+
+        @Override
+        public boolean access(long key) {
+            Long boxed = key;
+            if (resident.contains(boxed)) {
+                policy.keyAccessed(boxed);
+                return true;
+            }
+            if (resident.size() >= capacity) {
+                if (!policy.admit(boxed)) {
+                    return false;
+                }
+                Long evicted = policy.evictKey();
+                if (evicted != null) {
+                    resident.remove(evicted);
+                }
+            }
+            resident.add(boxed);
+            policy.keyAccessed(boxed);
+            return false;
+        }
+    }
+}
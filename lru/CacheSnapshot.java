@@ -0,0 +1,216 @@
+package lru;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+// Binary snapshot file of cache entries, coldest first, so replaying it in file order restores
+// the recency order. Layout: magic, version, then one record per entry:
+//   key length (int), value length (int), remaining time to live (long ns, 0 = none),
+//   idle expiry (long ns, 0 = none), key bytes, value bytes
+// Written sequentially through a FileChannel with a 64 KB buffer into a temporary file that
+// atomically replaces the old snapshot on close, so a crash mid-snapshot keeps the previous one.
+final class CacheSnapshot {
+    static final int MAGIC = 0x4c525553; // "LRUS"
+    static final int VERSION = 1;
+    static final int RECORD_HEADER = 24;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CacheSnapshot() {
+    }
+
+    static final class Writer<K, V> implements Closeable {
+        private final Path file;
+        private final Path temp;
+        private final FileChannel channel;
+        private final Codec<K> keyCodec;
+        private final Codec<V> valueCodec;
+        private ByteBuffer buffer;
+        private boolean failed = true; // until commit, close then drops the temporary file
+        private int count;
+
+        Writer(Path file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+            this.file = file.toAbsolutePath();
+            this.temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION);
+        }
+
+        void write(K key, V value, long expireAfterWriteNanos, long expireAfterAccessNanos) throws IOException {
+            int keyLength = keyCodec.sizeOf(key);
+            int valueLength = valueCodec.sizeOf(value);
+            int length = RECORD_HEADER + keyLength + valueLength;
+            if (buffer.remaining() < length) {
+                drain();
+                if (buffer.capacity() < length) {
+                    buffer = ByteBuffer.allocate(length); // oversized entry
+                }
+            }
+            buffer.putInt(keyLength).putInt(valueLength).putLong(expireAfterWriteNanos).putLong(expireAfterAccessNanos);
+            keyCodec.write(key, buffer);
+            valueCodec.write(value, buffer);
+            count++;
+        }
+
+        int count() {
+            return count;
+        }
+
+        // Publishes the snapshot; call only after every write succeeded
+        void commit() throws IOException {
+            drain();
+            channel.force(true);
+            failed = false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (failed) {
+                Files.deleteIfExists(temp);
+            } else {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // Reads a snapshot record by record: while (reader.next()) { reader.key() ... }
+    static final class Reader<K, V> implements Closeable {
+        private final FileChannel channel;
+        private final Codec<K> keyCodec;
+        private final Codec<V> valueCodec;
+        private ByteBuffer buffer;
+        private K key;
+        private V value;
+        private long expireAfterWriteNanos;
+        private long expireAfterAccessNanos;
+
+        Reader(Path file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.flip();
+            if (!fill(8) || buffer.getInt() != MAGIC) {
+                channel.close();
+                throw new IOException("Not a cache snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                channel.close();
+                throw new IOException("Unsupported cache snapshot version " + version + ": " + file);
+            }
+        }
+
+        // Moves to the next record; false at the end of the file or at a truncated record
+        boolean next() throws IOException {
+            if (!fill(RECORD_HEADER)) {
+                return false;
+            }
+            int keyLength = buffer.getInt();
+            int valueLength = buffer.getInt();
+            expireAfterWriteNanos = buffer.getLong();
+            expireAfterAccessNanos = buffer.getLong();
+            if (keyLength < 0 || valueLength < 0 || !fill(keyLength + valueLength)) {
+                return false;
+            }
+            key = keyCodec.read(slice(keyLength));
+            value = valueCodec.read(slice(valueLength));
+            return true;
+        }
+
+        K key() {
+            return key;
+        }
+
+        V value() {
+            return value;
+        }
+
+        long expireAfterWriteNanos() {
+            return expireAfterWriteNanos;
+        }
+
+        long expireAfterAccessNanos() {
+            return expireAfterAccessNanos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private ByteBuffer slice(int length) {
+            ByteBuffer view = buffer.duplicate();
+            view.limit(view.position() + length);
+            buffer.position(buffer.position() + length);
+            return view;
+        }
+
+        // Makes sure the next length bytes are buffered; false if the file ends first
+        private boolean fill(int length) throws IOException {
+            if (buffer.remaining() >= length) {
+                return true;
+            }
+            if (buffer.capacity() < length) {
+                ByteBuffer larger = ByteBuffer.allocate(length);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < length) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+    }
+}
+
+// Snapshots a cache of hot entries, restores it into a fresh cache and checks the LRU order survived.
+// Run: java lru.CacheSnapshotDriver
+class CacheSnapshotDriver {
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("cache", ".snapshot");
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(100_000, new LinkedLRUEvictionPolicy<>());
+        for (int i = 0; i < 200_000; i++) {
+            cache.put(i, "value-" + i);
+        }
+        cache.get(100_000); // now the most recent
+        cache.put(7, "short-lived", 1, 0, TimeUnit.HOURS); // evicts 100_001, 100_002 is next in line
+
+        long start = System.nanoTime();
+        int written = cache.snapshot(file, Codec.int32(), Codec.utf8());
+        System.out.printf("Wrote %d entries (%d KB) in %d ms%n", written, Files.size(file) / 1024,
+                (System.nanoTime() - start) / 1_000_000);
+
+        ConcurrentCache<Integer, String> restored = new ConcurrentCache<>(100_000, new LinkedLRUEvictionPolicy<>());
+        start = System.nanoTime();
+        int loaded = restored.restore(file, Codec.int32(), Codec.utf8());
+        System.out.printf("Restored %d entries in %d ms%n", loaded, (System.nanoTime() - start) / 1_000_000);
+
+        restored.put(-1, "new"); // evicts the coldest restored entry
+        System.out.println("100002 evicted first: " + (restored.get(100_002) == null)
+                + ", 100000 kept: " + restored.get(100_000) + ", 7 kept: " + restored.get(7));
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,102 @@
+package lru;
+
+import java.util.*;
+
+// Immutable snapshot of a cache's statistics, taken by StatsCounter.snapshot()
+public final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long[] removalCounts;   // indexed by RemovalCause.ordinal()
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTimeNanos;
+    private final long[] loadTimeHistogram;
+
+    CacheStats(long hitCount, long missCount, long[] removalCounts, long loadSuccessCount,
+               long loadFailureCount, long totalLoadTimeNanos, long[] loadTimeHistogram) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.removalCounts = removalCounts;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTimeNanos = totalLoadTimeNanos;
+        this.loadTimeHistogram = loadTimeHistogram;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public long removalCount(RemovalCause cause) {
+        return removalCounts[cause.ordinal()];
+    }
+
+    // Entries the cache dropped on its own, by size or expiry
+    public long evictionCount() {
+        return removalCount(RemovalCause.SIZE) + removalCount(RemovalCause.EXPIRED);
+    }
+
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long totalLoadTimeNanos() {
+        return totalLoadTimeNanos;
+    }
+
+    public double averageLoadPenaltyNanos() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? 0.0 : (double) totalLoadTimeNanos / loads;
+    }
+
+    // Bucket i counts loads that took less than 2^i microseconds (and at least 2^(i-1) for i > 0)
+    public long[] loadTimeHistogram() {
+        return loadTimeHistogram.clone();
+    }
+
+    // Upper bound in nanoseconds of the given load time percentile (0-100), from the histogram
+    public long loadTimePercentileNanos(double percentile) {
+        long loads = loadSuccessCount + loadFailureCount;
+        if (loads == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(loads * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < loadTimeHistogram.length; i++) {
+            seen += loadTimeHistogram[i];
+            if (seen >= rank) {
+                return (1L << i) * 1_000;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder removals = new StringBuilder();
+        for (RemovalCause cause : RemovalCause.values()) {
+            removals.append(removals.length() == 0 ? "" : ", ").append(cause).append('=').append(removalCount(cause));
+        }
+        return String.format(Locale.ROOT, "CacheStats{hits=%d, misses=%d, hitRate=%.3f, removals={%s}, "
+                        + "loadSuccess=%d, loadFailure=%d, avgLoadPenalty=%.0fns, p99Load<=%dns}",
+                hitCount, missCount, hitRate(), removals, loadSuccessCount, loadFailureCount,
+                averageLoadPenaltyNanos(), loadTimePercentileNanos(99));
+    }
+}
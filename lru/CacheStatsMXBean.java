@@ -0,0 +1,12 @@
+package lru;
+
+// JMX view of a cache's statistics, registered through StatsCounter.registerMBean
+public interface CacheStatsMXBean {
+    long getHitCount();
+    long getMissCount();
+    double getHitRate();
+    long getEvictionCount();
+    long getLoadSuccessCount();
+    long getLoadFailureCount();
+    double getAverageLoadPenaltyNanos();
+}
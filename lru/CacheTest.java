@@ -1,95 +1,6 @@
 package lru;
 
-
-import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.*;
-
-// Cache interface adhering to the Dependency Inversion Principle
-interface Cache<K, V> {
-    V get(K key);
-    void put(K key, V value);
-}
-
-// Eviction policy interface for Strategy Pattern
-interface EvictionPolicy<K> {
-    void keyAccessed(K key);
-    K evictKey();
-}
-
-// Implementation of LRU eviction policy
-class LRUEvictionPolicy<K> implements EvictionPolicy<K> {
-    private final Deque<K> deque;
-
-    public LRUEvictionPolicy() {
-        this.deque = new LinkedList<>();
-    }
-
-    @Override
-    public void keyAccessed(K key) {
-        deque.remove(key);
-        deque.addFirst(key);
-    }
-
-    @Override
-    public K evictKey() {
-        return deque.pollLast();
-    }
-}
-
-// Thread-safe Cache implementation with customizable eviction policy
-class ConcurrentCache<K, V> implements Cache<K, V> {
-    private final EvictionPolicy<K> evictionPolicy;
-    private final Map<K, V> map;
-    private final int capacity;
-    private final ReadWriteLock lock;
-
-    public ConcurrentCache(int capacity, EvictionPolicy<K> evictionPolicy) {
-        if (capacity <= 0) {
-            throw new IllegalArgumentException("Capacity must be greater than zero");
-        }
-        this.capacity = capacity;
-        this.evictionPolicy = evictionPolicy;
-        this.map = new ConcurrentHashMap<>();
-        this.lock = new ReentrantReadWriteLock();
-    }
-
-    @Override
-    public V get(K key) {
-        lock.readLock().lock();
-        try {
-            V value = map.get(key);
-            if (value != null) {
-                evictionPolicy.keyAccessed(key);
-            }
-            return value;
-        } finally {
-            lock.readLock().unlock();
-        }
-    }
-
-    @Override
-    public void put(K key, V value) {
-        lock.writeLock().lock();
-        try {
-            if (map.containsKey(key)) {
-                map.put(key, value);
-                evictionPolicy.keyAccessed(key);
-            } else {
-                if (map.size() >= capacity) {
-                    K evictedKey = evictionPolicy.evictKey();
-                    if (evictedKey != null) {
-                        map.remove(evictedKey);
-                    }
-                }
-                map.put(key, value);
-                evictionPolicy.keyAccessed(key);
-            }
-        } finally {
-            lock.writeLock().unlock();
-        }
-    }
-}
 
 // Test the Cache implementation
 public class CacheTest {
@@ -112,3 +23,80 @@ public class CacheTest {
         System.out.println(cache.get(5)); // Output: five
     }
 }
+
+// Expiry demo on a manual clock, so it runs instantly
+class ExpiringCacheDriver {
+    public static void main(String[] args) {
+        long[] now = {0};
+        ConcurrentCache<String, String> cache = new ConcurrentCache<>(100, new LinkedLRUEvictionPolicy<>());
+        cache.setTicker(() -> now[0]);
+        cache.setExpireAfterWrite(10, TimeUnit.SECONDS);
+
+        cache.put("session", "a");                                          // cache default: 10 s after write
+        cache.put("token", "b", 2, 0, TimeUnit.SECONDS);                    // per entry: 2 s after write
+        cache.put("idle", "c", 0, 3, TimeUnit.SECONDS);                     // per entry: 3 s without reads
+
+        now[0] = TimeUnit.SECONDS.toNanos(2);
+        System.out.println(cache.get("token"));   // null, expired at 2 s
+        System.out.println(cache.get("idle"));    // c, read at 2 s keeps it alive until 5 s
+        now[0] = TimeUnit.SECONDS.toNanos(4);
+        System.out.println(cache.get("idle"));    // c
+        now[0] = TimeUnit.SECONDS.toNanos(8);
+        System.out.println(cache.get("idle"));    // null, unread since 4 s
+        now[0] = TimeUnit.SECONDS.toNanos(10);
+        System.out.println(cache.get("session")); // null
+        cache.cleanUp();
+        System.out.println("Entries left after cleanUp: " + cache.weightedSize()); // 0
+    }
+}
+
+// Refresh-ahead demo: reads past the refresh age keep getting the old value while it reloads.
+// The clock starts far from 0 so a missing write time would show up as a reload on every read.
+class RefreshAheadDriver {
+    public static void main(String[] args) throws InterruptedException {
+        long[] now = {TimeUnit.HOURS.toNanos(5)};
+        int[] version = {0};
+        ConcurrentCache<String, String> cache = new ConcurrentCache<>(100, new LinkedLRUEvictionPolicy<>());
+        cache.setTicker(() -> now[0]);
+        cache.setRefreshAfterWrite(1, TimeUnit.MINUTES, key -> {
+            Thread.sleep(200); // slow backend
+            return key + "-v" + (++version[0]);
+        });
+        cache.put("config", "config-v0");
+        for (int i = 0; i < 5; i++) {
+            cache.get("config");
+        }
+        Thread.sleep(300);
+        System.out.println("Reloads for fresh reads: " + version[0]); // 0
+
+        now[0] += TimeUnit.MINUTES.toNanos(2);
+        long start = System.nanoTime();
+        System.out.println(cache.get("config") + " returned in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms"); // config-v0, no wait
+        Thread.sleep(500);
+        System.out.println(cache.get("config")); // config-v1
+
+        // A same-thread executor reloads inside the read that found the entry due, after the read
+        // lock is released
+        ConcurrentCache<String, String> inline = new ConcurrentCache<>(100, new LinkedLRUEvictionPolicy<>());
+        inline.setTicker(() -> now[0]);
+        inline.setRefreshAfterWrite(1, TimeUnit.MINUTES, key -> key + "-reloaded", Runnable::run);
+        inline.put("config", "config-v0");
+        now[0] += TimeUnit.MINUTES.toNanos(2);
+        System.out.println(inline.get("config") + ", then " + inline.get("config")); // config-v0, then config-reloaded
+
+        // A reload the cache rejects (too heavy) or a null reload is one failed load, no success
+        ConcurrentCache<String, String> weighed = new ConcurrentCache<>(10, (key, value) -> value.length(),
+                new LinkedLRUEvictionPolicy<>());
+        weighed.setTicker(() -> now[0]);
+        weighed.setStatsCounter(new StatsCounter());
+        weighed.setRefreshAfterWrite(1, TimeUnit.MINUTES, key -> key.equals("a") ? "far too long" : null, Runnable::run);
+        weighed.put("a", "short");
+        weighed.put("b", "short");
+        now[0] += TimeUnit.MINUTES.toNanos(2);
+        weighed.get("a");
+        weighed.get("b");
+        CacheStats stats = weighed.stats();
+        System.out.println("Loads: " + stats.loadSuccessCount() + " ok, " + stats.loadFailureCount() + " failed"); // 0 ok, 2 failed
+    }
+}
@@ -0,0 +1,109 @@
+package lru;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// CLOCK (second chance) eviction policy.
+// A hit on a tracked key only sets its reference bit, so the read path needs no lock and no
+// structural change. At eviction time the hand sweeps the ring: referenced keys get their bit
+// cleared and are passed over once, the first unreferenced key is evicted.
+// Inserts and evictKey must still be serialized by the caller (ConcurrentCache's write lock).
+class ClockEvictionPolicy<K> implements EvictionPolicy<K> {
+    private static final class Entry<K> {
+        final K key;
+        final int slot;
+        volatile boolean referenced;
+
+        Entry(K key, int slot) {
+            this.key = key;
+            this.slot = slot;
+        }
+    }
+
+    private final Map<K, Entry<K>> index;
+    private Entry<K>[] ring;
+    private int used;               // slots handed out so far, ring[0..used) is the clock face
+    private final Deque<Integer> freeSlots;
+    private int hand;
+
+    @SuppressWarnings("unchecked")
+    public ClockEvictionPolicy() {
+        this.index = new ConcurrentHashMap<>();
+        this.ring = (Entry<K>[]) new Entry<?>[16];
+        this.freeSlots = new ArrayDeque<>();
+    }
+
+    @Override
+    public void keyAccessed(K key) {
+        Entry<K> entry = index.get(key);
+        if (entry != null) {
+            if (!entry.referenced) { // skip the store when already set, keeps the cache line shared
+                entry.referenced = true;
+            }
+            return;
+        }
+        int slot;
+        if (!freeSlots.isEmpty()) {
+            slot = freeSlots.pop();
+        } else {
+            if (used == ring.length) {
+                ring = Arrays.copyOf(ring, used * 2);
+            }
+            slot = used++;
+        }
+        entry = new Entry<>(key, slot);
+        ring[slot] = entry;
+        index.put(key, entry);
+    }
+
+    @Override
+    public K evictKey() {
+        if (index.isEmpty()) {
+            return null;
+        }
+        while (true) {
+            Entry<K> entry = ring[hand];
+            hand = hand + 1 == used ? 0 : hand + 1;
+            if (entry == null) {
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false; // second chance
+                continue;
+            }
+            ring[entry.slot] = null;
+            freeSlots.push(entry.slot);
+            index.remove(entry.key);
+            return entry.key;
+        }
+    }
+
+    @Override
+    public void keyRemoved(K key) {
+        Entry<K> entry = index.remove(key);
+        if (entry != null) {
+            ring[entry.slot] = null;
+            freeSlots.push(entry.slot);
+        }
+    }
+
+    @Override
+    public boolean supportsConcurrentHits() {
+        return true;
+    }
+
+    // In the order the hand will reach them, unreferenced keys before the ones with a second chance
+    @Override
+    public List<K> keysColdestFirst() {
+        List<K> cold = new ArrayList<>(index.size());
+        List<K> referenced = new ArrayList<>();
+        for (int i = 0; i < used; i++) {
+            Entry<K> entry = ring[(hand + i) % used];
+            if (entry != null) {
+                (entry.referenced ? referenced : cold).add(entry.key);
+            }
+        }
+        cold.addAll(referenced);
+        return cold;
+    }
+}
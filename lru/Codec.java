@@ -0,0 +1,74 @@
+package lru;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Turns keys or values into bytes for cache snapshots
+interface Codec<T> {
+    int sizeOf(T value);
+
+    // Writes exactly sizeOf(value) bytes at out's position
+    void write(T value, ByteBuffer out);
+
+    // in holds exactly the bytes written for one value
+    T read(ByteBuffer in);
+
+    static Codec<String> utf8() {
+        return new Codec<String>() {
+            @Override
+            public int sizeOf(String value) {
+                return value.getBytes(StandardCharsets.UTF_8).length;
+            }
+
+            @Override
+            public void write(String value, ByteBuffer out) {
+                out.put(value.getBytes(StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public String read(ByteBuffer in) {
+                byte[] bytes = new byte[in.remaining()];
+                in.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    static Codec<Integer> int32() {
+        return new Codec<Integer>() {
+            @Override
+            public int sizeOf(Integer value) {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public void write(Integer value, ByteBuffer out) {
+                out.putInt(value);
+            }
+
+            @Override
+            public Integer read(ByteBuffer in) {
+                return in.getInt();
+            }
+        };
+    }
+
+    static Codec<Long> int64() {
+        return new Codec<Long>() {
+            @Override
+            public int sizeOf(Long value) {
+                return Long.BYTES;
+            }
+
+            @Override
+            public void write(Long value, ByteBuffer out) {
+                out.putLong(value);
+            }
+
+            @Override
+            public Long read(ByteBuffer in) {
+                return in.getLong();
+            }
+        };
+    }
+}
@@ -0,0 +1,808 @@
+package lru;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.LongSupplier;
+
+// Thread-safe Cache implementation with customizable eviction policy.
+// Entries can expire a fixed time after they were written and/or last read, set for the whole
+// cache or per entry. Expired entries are never returned; they are reclaimed by a TimerWheel
+// that is advanced on writes (and by cleanUp), so expiry costs amortized O(1) per entry.
+// With refresh-after-write, a read of an entry older than the refresh age still returns the
+// current value at once and reloads it in the background (stale-while-revalidate).
+// Statistics are off until a StatsCounter is set. A RemovalListener hears about every entry
+// that leaves the cache, with its cause, from a background thread.
+class ConcurrentCache<K, V> implements Cache<K, V> {
+    private final EvictionPolicy<K> evictionPolicy;
+    private final Map<K, Node<K, V>> map;
+    private final long maximumWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private long weightedSize; // guarded by the write lock
+    private final ReentrantReadWriteLock lock;
+    private LongSupplier ticker = System::nanoTime;
+    private long expireAfterWriteNanos;  // defaults for put(key, value), 0 = never
+    private long expireAfterAccessNanos;
+    private TimerWheel<Node<K, V>> timerWheel; // created on first use of expiry, guarded by the write lock
+    private volatile Refresh<K, V> refresh;    // null = no refresh
+    private volatile StatsCounter statsCounter; // null = statistics off
+    private volatile RemovalNotifier<K, V> removalNotifier; // null = no listener, set under the write lock
+    private List<RemovalNotification<K, V>> pendingRemovals; // guarded by the write lock, enqueued by unlockWrite
+    private volatile InvalidationBus<K> invalidationBus; // null = no NearCache on top
+
+    // Refresh settings, replaced as a whole so a reader never sees half of a change
+    private static final class Refresh<K, V> {
+        final long afterWriteNanos;
+        final CacheLoader<K, V> loader;
+        final Executor executor;
+
+        Refresh(long afterWriteNanos, CacheLoader<K, V> loader, Executor executor) {
+            this.afterWriteNanos = afterWriteNanos;
+            this.loader = loader;
+            this.executor = executor;
+        }
+    }
+
+    // Reloads for every cache using the default executor; created on first use, and its daemon
+    // threads end when idle
+    private static final class DefaultRefreshExecutor {
+        static final ThreadPoolExecutor INSTANCE = new ThreadPoolExecutor(4, 4, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1024), runnable -> {
+                    Thread thread = new Thread(runnable, "cache-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        static {
+            INSTANCE.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    public ConcurrentCache(int capacity, EvictionPolicy<K> evictionPolicy) {
+        this(capacity, (key, value) -> 1, evictionPolicy);
+    }
+
+    // Bounded by total weight: eviction continues until the weights of all entries fit maximumWeight
+    public ConcurrentCache(long maximumWeight, Weigher<? super K, ? super V> weigher, EvictionPolicy<K> evictionPolicy) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.evictionPolicy = evictionPolicy;
+        this.map = new ConcurrentHashMap<>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    // Default time to live after an entry is created or replaced; 0 disables it
+    public void setExpireAfterWrite(long duration, TimeUnit unit) {
+        expireAfterWriteNanos = toNanos(duration, unit);
+    }
+
+    // Default time an entry may go unread before it expires; 0 disables it
+    public void setExpireAfterAccess(long duration, TimeUnit unit) {
+        expireAfterAccessNanos = toNanos(duration, unit);
+    }
+
+    // Reload entries in the background once they are older than duration, on up to 4 daemon
+    // threads shared by all caches; reloads that do not fit in their queue are skipped and
+    // retried by a later read
+    public void setRefreshAfterWrite(long duration, TimeUnit unit, CacheLoader<K, V> loader) {
+        setRefreshAfterWrite(duration, unit, loader, DefaultRefreshExecutor.INSTANCE);
+    }
+
+    // Same, with the caller's executor; it should be bounded so a slow backend cannot pile up reloads.
+    // Reloads are handed to it after the read lock is released, so a same-thread executor (or
+    // CallerRunsPolicy) just makes that read wait for the reload.
+    public void setRefreshAfterWrite(long duration, TimeUnit unit, CacheLoader<K, V> loader, Executor executor) {
+        long nanos = toNanos(duration, unit);
+        this.refresh = nanos > 0 ? new Refresh<>(nanos, Objects.requireNonNull(loader), Objects.requireNonNull(executor)) : null;
+    }
+
+    // Records hits, misses, removals and refresh loads into counter; share one counter with a
+    // LoadingCache on top to get its loads in the same snapshot. null turns statistics off.
+    public void setStatsCounter(StatsCounter counter) {
+        this.statsCounter = counter;
+    }
+
+    // Notifies listener of evicted, expired, invalidated and replaced entries. Notifications are
+    // collected under the write lock, queued once it is released and delivered in batches on a
+    // daemon thread, so those of concurrent writes may arrive out of order. Once 64k are waiting,
+    // further ones are dropped and logged instead of holding up writers (see droppedRemovals).
+    // A previous listener still gets the notifications queued for it, then its thread ends.
+    // null removes the listener.
+    public void setRemovalListener(RemovalListener<? super K, ? super V> listener) {
+        setRemovalListener(listener, RemovalNotifier.DEFAULT_CAPACITY);
+    }
+
+    // Same, with room for queueCapacity pending notifications
+    @SuppressWarnings("unchecked")
+    public void setRemovalListener(RemovalListener<? super K, ? super V> listener, int queueCapacity) {
+        RemovalNotifier<K, V> replaced;
+        lock.writeLock().lock();
+        try {
+            replaced = removalNotifier;
+            removalNotifier = listener == null ? null
+                    : new RemovalNotifier<>((RemovalListener<K, V>) listener, queueCapacity);
+        } finally {
+            unlockWrite();
+        }
+        if (replaced != null) {
+            replaced.shutdown();
+        }
+    }
+
+    // Notifications the current listener lost because its queue was full
+    public long droppedRemovals() {
+        RemovalNotifier<K, V> notifier = removalNotifier;
+        return notifier == null ? 0 : notifier.droppedCount();
+    }
+
+    // Waits until the removal listener has been handed every notification of removals so far
+    public void flushRemovals() throws InterruptedException {
+        RemovalNotifier<K, V> notifier = removalNotifier;
+        if (notifier != null) {
+            notifier.flush();
+        }
+    }
+
+    // Delivers the pending removal notifications and stops the listener thread, e.g. at shutdown
+    // so a write-back listener gets the last dirty entries. The cache itself stays usable.
+    public void close() throws InterruptedException {
+        RemovalNotifier<K, V> closed;
+        lock.writeLock().lock();
+        try {
+            closed = removalNotifier;
+            removalNotifier = null;
+        } finally {
+            unlockWrite();
+        }
+        if (closed != null) {
+            closed.close();
+        }
+    }
+
+    // Snapshot of the statistics so far; all zero while statistics are off
+    public CacheStats stats() {
+        StatsCounter counter = statsCounter;
+        return (counter != null ? counter : new StatsCounter()).snapshot();
+    }
+
+    // Clock used for expiry, in nanoseconds. Lets drivers and tests run without sleeping.
+    void setTicker(LongSupplier ticker) {
+        this.ticker = ticker;
+    }
+
+    long now() {
+        return ticker.getAsLong();
+    }
+
+    // The bus every write and removal of a key is published on, for the NearCaches in front of
+    // this cache; created on first use
+    synchronized InvalidationBus<K> invalidationBus() {
+        if (invalidationBus == null) {
+            invalidationBus = new InvalidationBus<>(64 * 1024);
+        }
+        return invalidationBus;
+    }
+
+    @Override
+    public V get(K key) {
+        return get(key, null);
+    }
+
+    // get for NearCache: also stores in deadline[0] until when a copy of the value may be served
+    // without asking again, the entry's expiry or refresh time (Long.MAX_VALUE if none)
+    V get(K key, long[] deadline) {
+        Refresh<K, V> refresh = this.refresh;
+        Node<K, V> due = null;
+        lock.readLock().lock();
+        try {
+            Node<K, V> node = map.get(key);
+            StatsCounter counter = statsCounter;
+            if (node == null || !recordRead(node)) {
+                if (counter != null) {
+                    counter.recordMisses(1);
+                }
+                return null;
+            }
+            if (counter != null) {
+                counter.recordHits(1);
+            }
+            if (claimRefresh(node, refresh)) {
+                due = node;
+            }
+            if (deadline != null) {
+                deadline[0] = Math.min(node.expiresAt(), refresh != null
+                        ? Node.saturatedAdd(node.writeTime, refresh.afterWriteNanos) : Long.MAX_VALUE);
+            }
+            if (evictionPolicy.supportsConcurrentHits()) {
+                evictionPolicy.keyAccessed(key);
+            } else {
+                // Many readers can hold the read lock at once, but the policy's ordering is not thread-safe
+                synchronized (evictionPolicy) {
+                    evictionPolicy.keyAccessed(key);
+                }
+            }
+            return node.value;
+        } finally {
+            lock.readLock().unlock();
+            if (due != null) {
+                refresh(due, refresh); // outside the lock, the reload takes the write lock
+            }
+        }
+    }
+
+    @Override
+    public V peek(K key) {
+        lock.readLock().lock();
+        try {
+            Node<K, V> node = map.get(key);
+            if (node == null || (node.expires() && node.isExpired(ticker.getAsLong()))) {
+                return null;
+            }
+            return node.value;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // One read lock and one pass over the policy for the whole batch
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        Map<K, V> hits = new LinkedHashMap<>();
+        Refresh<K, V> refresh = this.refresh;
+        List<Node<K, V>> due = null;
+        int requested = 0;
+        lock.readLock().lock();
+        try {
+            for (K key : keys) {
+                requested++;
+                Node<K, V> node = map.get(key);
+                if (node != null && recordRead(node)) {
+                    hits.put(key, node.value);
+                    if (claimRefresh(node, refresh)) {
+                        if (due == null) {
+                            due = new ArrayList<>();
+                        }
+                        due.add(node);
+                    }
+                }
+            }
+            StatsCounter counter = statsCounter;
+            if (counter != null) {
+                counter.recordHits(hits.size());
+                counter.recordMisses(requested - hits.size());
+            }
+            if (hits.isEmpty()) {
+                return hits;
+            }
+            if (evictionPolicy.supportsConcurrentHits()) {
+                for (K key : hits.keySet()) {
+                    evictionPolicy.keyAccessed(key);
+                }
+            } else {
+                synchronized (evictionPolicy) {
+                    for (K key : hits.keySet()) {
+                        evictionPolicy.keyAccessed(key);
+                    }
+                }
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+            if (due != null) {
+                for (Node<K, V> node : due) {
+                    refresh(node, refresh);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        put(key, value, expireAfterWriteNanos, expireAfterAccessNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // One write lock for the whole batch, with the cache's default expiry
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        int[] weights = new int[entries.size()];
+        int i = 0;
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            weights[i] = weightOf(entry.getKey(), entry.getValue());
+            if (weights[i++] > maximumWeight) {
+                throw new IllegalArgumentException("Entry weight exceeds the maximum weight " + maximumWeight);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            long now = startWrite(expireAfterWriteNanos, expireAfterAccessNanos);
+            i = 0;
+            for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+                putLocked(entry.getKey(), entry.getValue(), weights[i++], expireAfterWriteNanos, expireAfterAccessNanos, now);
+            }
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        lock.writeLock().lock();
+        try {
+            for (K key : keys) {
+                Node<K, V> node = map.remove(key);
+                if (node != null) {
+                    unlinkNode(node);
+                    evictionPolicy.keyRemoved(key);
+                    notifyRemoval(key, node.value, RemovalCause.EXPLICIT);
+                }
+            }
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    // Puts only if the key has no live entry; returns whether it did
+    public boolean putIfAbsent(K key, V value) {
+        return putIfAbsent(key, value, expireAfterWriteNanos, expireAfterAccessNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // putIfAbsent with per-entry expiry, as in put(key, value, expireAfterWrite, expireAfterAccess, unit)
+    public boolean putIfAbsent(K key, V value, long expireAfterWrite, long expireAfterAccess, TimeUnit unit) {
+        int weight = weightOf(key, value);
+        if (weight > maximumWeight) {
+            throw new IllegalArgumentException("Entry weight " + weight + " exceeds the maximum weight " + maximumWeight);
+        }
+        long writeNanos = toNanos(expireAfterWrite, unit);
+        long accessNanos = toNanos(expireAfterAccess, unit);
+        lock.writeLock().lock();
+        try {
+            long now = startWrite(writeNanos, accessNanos);
+            Node<K, V> node = map.get(key);
+            if (node != null && !(node.expires() && node.isExpired(ticker.getAsLong()))) {
+                return false;
+            }
+            putLocked(key, value, weight, writeNanos, accessNanos, now);
+            return true;
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    // For ShardedCache: hands the live entry of key to target unless target has one already,
+    // with the time it has left to live after write and its idle time, then drops it here.
+    // Returns whether target took it.
+    boolean moveTo(K key, ConcurrentCache<K, V> target) {
+        V value = null;
+        long timeToLive = 0;
+        long idleTime = 0;
+        lock.readLock().lock();
+        try {
+            Node<K, V> node = map.get(key);
+            long now = ticker.getAsLong();
+            if (node != null && !(node.expires() && node.isExpired(now))) {
+                value = node.value;
+                timeToLive = node.writeNanos > 0 ? Math.max(1, node.writeTime + node.writeNanos - now) : 0;
+                idleTime = node.accessNanos;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        boolean moved = value != null
+                && target.putIfAbsent(key, value, timeToLive, idleTime, TimeUnit.NANOSECONDS);
+        invalidate(key);
+        return moved;
+    }
+
+    // Snapshot of the keys currently held, expired ones included until they are reclaimed
+    List<K> keys() {
+        return new ArrayList<>(map.keySet());
+    }
+
+    // Puts with per-entry expiry that overrides the cache defaults; 0 means the entry never
+    // expires that way
+    public void put(K key, V value, long expireAfterWrite, long expireAfterAccess, TimeUnit unit) {
+        int weight = weightOf(key, value);
+        if (weight > maximumWeight) {
+            throw new IllegalArgumentException("Entry weight " + weight + " exceeds the maximum weight " + maximumWeight);
+        }
+        long writeNanos = toNanos(expireAfterWrite, unit);
+        long accessNanos = toNanos(expireAfterAccess, unit);
+        lock.writeLock().lock();
+        try {
+            putLocked(key, value, weight, writeNanos, accessNanos, startWrite(writeNanos, accessNanos));
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    // Must hold the write lock. Reads the clock if anything expires and reclaims expired entries.
+    private long startWrite(long writeNanos, long accessNanos) {
+        // writeTime is also the refresh age, so the clock is needed whenever refresh is on
+        long now = writeNanos > 0 || accessNanos > 0 || timerWheel != null || refresh != null
+                ? ticker.getAsLong() : 0;
+        if (timerWheel != null) {
+            timerWheel.advance(now); // amortized reclamation of expired entries
+        }
+        return now;
+    }
+
+    // Must hold the write lock
+    private void putLocked(K key, V value, int weight, long writeNanos, long accessNanos, long now) {
+        publishInvalidation(key);
+        Node<K, V> node = map.get(key);
+        if (node != null) {
+            weightedSize += weight - node.weight;
+            notifyRemoval(key, node.value, RemovalCause.REPLACED);
+            node.update(value, weight, now, writeNanos, accessNanos);
+            scheduleExpiry(node, now);
+            evictionPolicy.keyAccessed(key);
+            evictWhile(0); // a heavier value may push the cache over its limit
+        } else {
+            if (weightedSize + weight > maximumWeight) {
+                if (!evictionPolicy.admit(key)) {
+                    notifyRemoval(key, value, RemovalCause.SIZE); // rejected, the value is dropped
+                    return;
+                }
+                evictWhile(weight);
+            }
+            node = new Node<>(key);
+            node.update(value, weight, now, writeNanos, accessNanos);
+            map.put(key, node);
+            weightedSize += weight;
+            scheduleExpiry(node, now);
+            evictionPolicy.keyAccessed(key);
+        }
+    }
+
+    // Must hold the read or write lock. Returns false if the node has expired; otherwise records
+    // the access time.
+    private boolean recordRead(Node<K, V> node) {
+        if (node.expires()) {
+            long now = ticker.getAsLong();
+            if (node.isExpired(now)) {
+                return false; // reclaimed by the timer wheel on a later write
+            }
+            if (node.accessNanos > 0) {
+                node.accessTime = now;
+            }
+        }
+        return true;
+    }
+
+    // Must hold the read or write lock. True if the entry is due for a refresh and this caller
+    // won the right to start it; it must then call refresh after releasing the lock.
+    private boolean claimRefresh(Node<K, V> node, Refresh<K, V> refresh) {
+        if (refresh == null || node.refreshing != 0
+                || ticker.getAsLong() - node.writeTime < refresh.afterWriteNanos
+                || !Node.REFRESHING.compareAndSet(node, 0, 1)) {
+            return false;
+        }
+        node.refreshedWriteTime = node.writeTime;
+        node.refreshedValue = node.value;
+        return true;
+    }
+
+    // Starts the reload claimed by claimRefresh. Called without the lock, since the reload takes
+    // the write lock and may run on the calling thread. The old value stays until the reload
+    // succeeds, and a reload that finishes after the entry was written again is dropped.
+    // As in LoadingCache, a load that returns null counts as a failure; one that the cache
+    // rejects counts as a failure only.
+    private void refresh(Node<K, V> node, Refresh<K, V> refresh) {
+        long writeTime = node.refreshedWriteTime;
+        V oldValue = node.refreshedValue;
+        node.refreshedValue = null;
+        try {
+            refresh.executor.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    V value = refresh.loader.load(node.key);
+                    if (value == null) {
+                        recordLoad(false, start); // keep serving the old value, a later read retries
+                        return;
+                    }
+                    lock.writeLock().lock();
+                    try {
+                        if (map.get(node.key) == node && node.writeTime == writeTime && node.value == oldValue) {
+                            put(node.key, value, node.writeNanos, node.accessNanos, TimeUnit.NANOSECONDS);
+                        }
+                    } finally {
+                        unlockWrite();
+                    }
+                    recordLoad(true, start);
+                } catch (Exception e) {
+                    recordLoad(false, start); // keep serving the old value, a later read retries
+                } finally {
+                    node.refreshing = 0;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            node.refreshing = 0; // pool busy, a later read retries
+        }
+    }
+
+    // Reclaims expired entries now instead of waiting for the next write
+    public void cleanUp() {
+        lock.writeLock().lock();
+        try {
+            if (timerWheel != null) {
+                timerWheel.advance(ticker.getAsLong());
+            }
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    // Writes the live entries to file in eviction order, coldest first, and returns how many were
+    // written. The order is taken under the read lock, the slow part (encoding and I/O) runs
+    // without it; values replaced meanwhile are written with their newer value.
+    // Time to live is saved as the time remaining, so it keeps counting across a restart.
+    public int snapshot(Path file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        List<Node<K, V>> nodes = new ArrayList<>(map.size());
+        lock.readLock().lock();
+        try {
+            List<K> keys;
+            synchronized (evictionPolicy) {
+                keys = evictionPolicy.keysColdestFirst();
+            }
+            if (keys.isEmpty()) {
+                keys = new ArrayList<>(map.keySet()); // policy without an order
+            }
+            for (K key : keys) {
+                Node<K, V> node = map.get(key);
+                if (node != null) {
+                    nodes.add(node);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long now = ticker.getAsLong();
+        try (CacheSnapshot.Writer<K, V> out = new CacheSnapshot.Writer<>(file, keyCodec, valueCodec)) {
+            for (Node<K, V> node : nodes) {
+                if (node.isExpired(now)) {
+                    continue;
+                }
+                long timeToLive = node.writeNanos > 0 ? Math.max(1, node.writeTime + node.writeNanos - now) : 0;
+                out.write(node.key, node.value, timeToLive, node.accessNanos);
+            }
+            out.commit();
+            return out.count();
+        }
+    }
+
+    // Loads a snapshot written by snapshot(), replaying it in file order so the recency order
+    // comes back. Keys already in the cache keep their current value. Returns the number of
+    // entries loaded; idle expiry starts over from the restore.
+    public int restore(Path file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        int loaded = 0;
+        try (CacheSnapshot.Reader<K, V> in = new CacheSnapshot.Reader<>(file, keyCodec, valueCodec)) {
+            List<K> keys = new ArrayList<>();
+            List<V> values = new ArrayList<>();
+            List<long[]> expiries = new ArrayList<>();
+            // Decode a batch outside the lock, then insert it under one write lock
+            while (in.next()) {
+                keys.add(in.key());
+                values.add(in.value());
+                expiries.add(new long[] {in.expireAfterWriteNanos(), in.expireAfterAccessNanos()});
+                if (keys.size() == 1024) {
+                    loaded += restoreBatch(keys, values, expiries);
+                }
+            }
+            loaded += restoreBatch(keys, values, expiries);
+        }
+        return loaded;
+    }
+
+    private int restoreBatch(List<K> keys, List<V> values, List<long[]> expiries) {
+        int loaded = 0;
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < keys.size(); i++) {
+                K key = keys.get(i);
+                V value = values.get(i);
+                int weight = weightOf(key, value);
+                if (map.containsKey(key) || weight > maximumWeight) {
+                    continue;
+                }
+                long writeNanos = expiries.get(i)[0];
+                long accessNanos = expiries.get(i)[1];
+                putLocked(key, value, weight, writeNanos, accessNanos, startWrite(writeNanos, accessNanos));
+                loaded++;
+            }
+        } finally {
+            unlockWrite();
+        }
+        keys.clear();
+        values.clear();
+        expiries.clear();
+        return loaded;
+    }
+
+    // Total weight of the cached entries; the entry count when no weigher was given.
+    // Includes expired entries that have not been reclaimed yet.
+    public long weightedSize() {
+        lock.readLock().lock();
+        try {
+            return weightedSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Must hold the write lock. Evicts until incomingWeight more fits under maximumWeight.
+    private void evictWhile(int incomingWeight) {
+        while (weightedSize + incomingWeight > maximumWeight) {
+            K evictedKey = evictionPolicy.evictKey();
+            if (evictedKey == null) {
+                return;
+            }
+            Node<K, V> evicted = map.remove(evictedKey);
+            if (evicted != null) {
+                unlinkNode(evicted);
+                notifyRemoval(evictedKey, evicted.value, RemovalCause.SIZE);
+            }
+        }
+    }
+
+    // Must hold the write lock
+    private void scheduleExpiry(Node<K, V> node, long now) {
+        if (node.expires()) {
+            if (timerWheel == null) {
+                timerWheel = new TimerWheel<>(now, this::expire);
+            }
+            timerWheel.schedule(node);
+        } else if (timerWheel != null) {
+            timerWheel.deschedule(node);
+        }
+    }
+
+    // Timer wheel callback, runs under the write lock
+    private void expire(Node<K, V> node) {
+        if (map.remove(node.key, node)) {
+            unlinkNode(node);
+            evictionPolicy.keyRemoved(node.key);
+            notifyRemoval(node.key, node.value, RemovalCause.EXPIRED);
+        }
+    }
+
+    // Must hold the write lock
+    private void notifyRemoval(K key, V value, RemovalCause cause) {
+        if (cause != RemovalCause.REPLACED) {
+            publishInvalidation(key); // putLocked publishes replacements
+        }
+        StatsCounter counter = statsCounter;
+        if (counter != null) {
+            counter.recordRemoval(cause);
+        }
+        if (removalNotifier != null) {
+            if (pendingRemovals == null) {
+                pendingRemovals = new ArrayList<>();
+            }
+            pendingRemovals.add(new RemovalNotification<>(key, value, cause));
+        }
+    }
+
+    // Releases the write lock. The outermost release hands the removal notifications collected
+    // under the lock to the listener's queue after unlocking, so no one waits on the lock for it.
+    private void unlockWrite() {
+        List<RemovalNotification<K, V>> removals = null;
+        RemovalNotifier<K, V> notifier = removalNotifier;
+        if (pendingRemovals != null && lock.getWriteHoldCount() == 1) {
+            removals = pendingRemovals;
+            pendingRemovals = null;
+            notifier.startEnqueue();
+        }
+        lock.writeLock().unlock();
+        if (removals != null) {
+            notifier.enqueue(removals);
+        }
+    }
+
+    // Must hold the write lock, so NearCache readers that see the event read the new state
+    private void publishInvalidation(K key) {
+        InvalidationBus<K> bus = invalidationBus;
+        if (bus != null) {
+            bus.publish(key);
+        }
+    }
+
+    private void recordLoad(boolean success, long startNanos) {
+        StatsCounter counter = statsCounter;
+        if (counter == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        if (success) {
+            counter.recordLoadSuccess(elapsed);
+        } else {
+            counter.recordLoadFailure(elapsed);
+        }
+    }
+
+    // Must hold the write lock; node has already been removed from the map
+    private void unlinkNode(Node<K, V> node) {
+        weightedSize -= node.weight;
+        if (timerWheel != null) {
+            timerWheel.deschedule(node);
+        }
+    }
+
+    private int weightOf(K key, V value) {
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weigher returned a negative weight");
+        }
+        return weight;
+    }
+
+    private static long toNanos(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Duration must not be negative");
+        }
+        return unit.toNanos(duration);
+    }
+
+    // Map entry with the expiry bookkeeping; also the intrusive timer wheel node,
+    // so expiry adds no allocation per entry
+    static final class Node<K, V> extends TimerNode {
+        @SuppressWarnings("rawtypes")
+        static final AtomicIntegerFieldUpdater<Node> REFRESHING =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "refreshing");
+
+        final K key;
+        volatile V value;
+        int weight;
+        long writeNanos;            // per-entry time to live after write, 0 = none
+        volatile long accessNanos;  // per-entry idle time, 0 = none
+        volatile long writeTime;
+        volatile long accessTime;
+        volatile int refreshing;    // 1 while a background reload is running
+        long refreshedWriteTime;    // writeTime and value the running reload replaces, set by
+        V refreshedValue;           // its claimer and handed over with the reload task
+
+        Node(K key) {
+            this.key = key;
+        }
+
+        void update(V value, int weight, long now, long writeNanos, long accessNanos) {
+            this.weight = weight;
+            this.writeNanos = writeNanos;
+            this.accessNanos = accessNanos;
+            this.writeTime = now;
+            this.accessTime = now;
+            this.value = value;
+        }
+
+        boolean expires() {
+            return writeNanos > 0 || accessNanos > 0;
+        }
+
+        boolean isExpired(long now) {
+            long deadline = expiresAt();
+            return deadline != Long.MAX_VALUE && now - deadline >= 0;
+        }
+
+        @Override
+        long expiresAt() {
+            long deadline = Long.MAX_VALUE;
+            if (writeNanos > 0) {
+                deadline = saturatedAdd(writeTime, writeNanos);
+            }
+            if (accessNanos > 0) {
+                deadline = Math.min(deadline, saturatedAdd(accessTime, accessNanos));
+            }
+            return deadline;
+        }
+
+        private static long saturatedAdd(long a, long b) {
+            long sum = a + b;
+            return ((a ^ sum) & (b ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+        }
+    }
+}
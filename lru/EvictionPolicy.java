@@ -0,0 +1,30 @@
+package lru;
+
+import java.util.*;
+
+// Eviction policy interface for Strategy Pattern
+interface EvictionPolicy<K> {
+    void keyAccessed(K key);
+    K evictKey();
+    // The cache dropped the key for a reason other than evictKey (expiry, explicit removal)
+    void keyRemoved(K key);
+
+    // Admission hook, asked before a new key is inserted into a full cache.
+    // Returning false rejects the candidate and leaves the resident keys alone.
+    default boolean admit(K candidate) {
+        return true;
+    }
+
+    // True when keyAccessed for a key that is already tracked may run concurrently with itself,
+    // so a cache does not need to serialize its read path around the policy.
+    default boolean supportsConcurrentHits() {
+        return false;
+    }
+
+    // The tracked keys from the next one to be evicted to the most protected one, used to write
+    // snapshots that keep the recency order. Replaying them through keyAccessed in this order
+    // rebuilds roughly the same state. Policies without an order return an empty list.
+    default List<K> keysColdestFirst() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,88 @@
+package lru;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+// Rough single-threaded throughput comparison of the eviction policies behind ConcurrentCache.
+// Every round fills the cache to capacity and then replays random hits plus a slice of misses,
+// so the cost measured is dominated by keyAccessed/evictKey.
+// Run: java lru.EvictionPolicyBenchmark
+public class EvictionPolicyBenchmark {
+    private static final int OPS = 50_000;
+
+    public static void main(String[] args) {
+        int[] capacities = {1_000, 10_000, 25_000};
+        Map<String, Supplier<EvictionPolicy<Integer>>> policies = new LinkedHashMap<>();
+        policies.put("LRUEvictionPolicy", LRUEvictionPolicy::new);
+        policies.put("LinkedLRUEvictionPolicy", LinkedLRUEvictionPolicy::new);
+        policies.put("ClockEvictionPolicy", ClockEvictionPolicy::new);
+
+        for (int capacity : capacities) {
+            for (Map.Entry<String, Supplier<EvictionPolicy<Integer>>> policy : policies.entrySet()) {
+                run(policy.getValue(), capacity, 1); // warm-up
+                double opsPerSec = run(policy.getValue(), capacity, 3);
+                System.out.printf("%-26s capacity=%-7d %,14.0f ops/s%n", policy.getKey(), capacity, opsPerSec);
+            }
+        }
+
+        // Hit path only: every get is a hit, so this is the cost of keyAccessed on the read side
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        for (Map.Entry<String, Supplier<EvictionPolicy<Integer>>> policy : policies.entrySet()) {
+            if (policy.getKey().equals("LRUEvictionPolicy")) {
+                continue; // O(capacity) per hit, would dominate the run
+            }
+            hitPath(policy.getValue(), 10_000, threads); // warm-up
+            System.out.printf("%-26s hit path, %d threads %,10.1f ns/get%n",
+                    policy.getKey(), threads, hitPath(policy.getValue(), 10_000, threads));
+        }
+    }
+
+    static double hitPath(Supplier<EvictionPolicy<Integer>> policy, int capacity, int threads) {
+        Cache<Integer, Integer> cache = new ConcurrentCache<>(capacity, policy.get());
+        for (int i = 0; i < capacity; i++) {
+            cache.put(i, i);
+        }
+        int getsPerThread = 1_000_000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < getsPerThread; i++) {
+                    cache.get(random.nextInt(capacity));
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) worker.start();
+        try {
+            for (Thread worker : workers) worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return (double) (System.nanoTime() - start) / getsPerThread; // wall time per get, per thread
+    }
+
+    static double run(Supplier<EvictionPolicy<Integer>> policy, int capacity, int rounds) {
+        long totalNanos = 0;
+        long totalOps = 0;
+        for (int round = 0; round < rounds; round++) {
+            Cache<Integer, Integer> cache = new ConcurrentCache<>(capacity, policy.get());
+            for (int i = 0; i < capacity; i++) {
+                cache.put(i, i);
+            }
+            Random random = new Random(42 + round);
+            int keySpace = capacity + capacity / 10; // ~90% hit rate
+            long start = System.nanoTime();
+            for (int i = 0; i < OPS; i++) {
+                int key = random.nextInt(keySpace);
+                if (cache.get(key) == null) {
+                    cache.put(key, key);
+                }
+            }
+            totalNanos += System.nanoTime() - start;
+            totalOps += OPS;
+        }
+        return totalOps * 1_000_000_000.0 / totalNanos;
+    }
+}
@@ -0,0 +1,63 @@
+package lru;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Versioned stream of invalidated keys. Every publish gets the next version and goes into a ring
+// of the last capacity events. A subscriber remembers the last version it applied and replays
+// the events after it; one that fell more than capacity events behind gets false and has to
+// drop everything it derived from the stream.
+final class InvalidationBus<K> {
+    private static final class Event<K> {
+        final long version;
+        final K key;
+
+        Event(long version, K key) {
+            this.version = version;
+            this.key = key;
+        }
+    }
+
+    private final AtomicReferenceArray<Event<K>> log;
+    private final int mask;
+    private final AtomicLong version;
+
+    // capacity is rounded up to a power of two
+    InvalidationBus(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.log = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.version = new AtomicLong();
+    }
+
+    // Publishers are serialized; a publish is visible once version() covers it
+    synchronized void publish(K key) {
+        long next = version.get() + 1;
+        log.set((int) next & mask, new Event<>(next, key));
+        version.set(next);
+    }
+
+    long version() {
+        return version.get();
+    }
+
+    // Hands the keys published after version from, up to and including to, to invalidate.
+    // Returns false if some of them were already overwritten.
+    boolean replay(long from, long to, Consumer<? super K> invalidate) {
+        if (to - from > mask + 1) {
+            return false;
+        }
+        for (long next = from + 1; next <= to; next++) {
+            Event<K> event = log.get((int) next & mask);
+            if (event == null || event.version != next) {
+                return false; // lapped by the publishers while replaying
+            }
+            invalidate.accept(event.key);
+        }
+        return true;
+    }
+}
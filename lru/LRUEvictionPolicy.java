@@ -0,0 +1,35 @@
+package lru;
+
+import java.util.*;
+
+// Implementation of LRU eviction policy
+class LRUEvictionPolicy<K> implements EvictionPolicy<K> {
+    private final Deque<K> deque;
+
+    public LRUEvictionPolicy() {
+        this.deque = new LinkedList<>();
+    }
+
+    @Override
+    public void keyAccessed(K key) {
+        deque.remove(key);
+        deque.addFirst(key);
+    }
+
+    @Override
+    public K evictKey() {
+        return deque.pollLast();
+    }
+
+    @Override
+    public void keyRemoved(K key) {
+        deque.remove(key);
+    }
+
+    @Override
+    public List<K> keysColdestFirst() {
+        List<K> keys = new ArrayList<>(deque.size());
+        deque.descendingIterator().forEachRemaining(keys::add);
+        return keys;
+    }
+}
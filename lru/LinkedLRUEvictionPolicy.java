@@ -0,0 +1,85 @@
+package lru;
+
+import java.util.*;
+
+// LRU eviction policy with O(1) access, insert and eviction.
+// Every key owns an intrusive list node that is looked up through a hash index,
+// so moving a key to the front never walks the list the way LinkedList.remove(key) does.
+class LinkedLRUEvictionPolicy<K> implements EvictionPolicy<K> {
+    private static final class Node<K> {
+        final K key;
+        Node<K> prev;
+        Node<K> next;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+
+    private final Map<K, Node<K>> index;
+    // Sentinel: head.next is the most recently used key, head.prev the least recently used one
+    private final Node<K> head;
+
+    public LinkedLRUEvictionPolicy() {
+        this.index = new HashMap<>();
+        this.head = new Node<>(null);
+        head.prev = head;
+        head.next = head;
+    }
+
+    @Override
+    public void keyAccessed(K key) {
+        Node<K> node = index.get(key);
+        if (node == null) {
+            node = new Node<>(key);
+            index.put(key, node);
+        } else if (head.next == node) {
+            return; // already the most recent key
+        } else {
+            unlink(node);
+        }
+        linkFirst(node);
+    }
+
+    @Override
+    public K evictKey() {
+        Node<K> last = head.prev;
+        if (last == head) {
+            return null;
+        }
+        unlink(last);
+        index.remove(last.key);
+        return last.key;
+    }
+
+    @Override
+    public void keyRemoved(K key) {
+        Node<K> node = index.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    @Override
+    public List<K> keysColdestFirst() {
+        List<K> keys = new ArrayList<>(index.size());
+        for (Node<K> node = head.prev; node != head; node = node.prev) {
+            keys.add(node.key);
+        }
+        return keys;
+    }
+
+    private void linkFirst(Node<K> node) {
+        node.prev = head;
+        node.next = head.next;
+        head.next.prev = node;
+        head.next = node;
+    }
+
+    private void unlink(Node<K> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+}
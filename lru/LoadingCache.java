@@ -0,0 +1,241 @@
+package lru;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Cache that loads missing values through a CacheLoader, with single-flight coalescing:
+// concurrent misses on the same key share one in-flight CompletableFuture, so the backend sees
+// one load per key however many threads miss together. Works on top of any Cache.
+// A load that fails or returns null is not cached; the next miss tries again.
+class LoadingCache<K, V> implements Cache<K, V> {
+    private final Cache<K, V> cache;
+    private final CacheLoader<K, V> loader;
+    private final Executor executor;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight;
+    private StatsCounter statsCounter; // null = load statistics off
+
+    public LoadingCache(Cache<K, V> cache, CacheLoader<K, V> loader) {
+        this(cache, loader, ForkJoinPool.commonPool());
+    }
+
+    // executor runs the loads started by getAsync
+    public LoadingCache(Cache<K, V> cache, CacheLoader<K, V> loader, Executor executor) {
+        this.cache = cache;
+        this.loader = loader;
+        this.executor = executor;
+        this.inFlight = new ConcurrentHashMap<>();
+    }
+
+    // Records load successes, failures and times; hits and misses are counted by the wrapped
+    // cache, so give it the same counter. A load that returns null counts as a failure.
+    public void setStatsCounter(StatsCounter counter) {
+        this.statsCounter = counter;
+    }
+
+    // Returns the cached value, loading it on a miss. The first thread to miss loads in its
+    // own thread, the others wait for its result.
+    @Override
+    public V get(K key) {
+        V value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing == null) {
+            load(key, future);
+            existing = future;
+        }
+        return await(key, existing);
+    }
+
+    public CompletableFuture<V> getAsync(K key) {
+        V value = cache.get(key);
+        if (value != null) {
+            return CompletableFuture.completedFuture(value);
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> load(key, future));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // Returns the values found for keys, loading all misses that nobody else is loading with a
+    // single CacheLoader.loadAll call. Keys without a value are absent from the result.
+    // keys is iterated once, so a one-shot Iterable works too.
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        Set<K> requested = new LinkedHashSet<>();
+        for (K key : keys) {
+            requested.add(key);
+        }
+        Map<K, V> result = new LinkedHashMap<>(cache.getAll(requested)); // hits in one batch
+        Map<K, CompletableFuture<V>> claimed = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> waiting = new LinkedHashMap<>();
+        for (K key : requested) {
+            if (result.containsKey(key)) {
+                continue;
+            }
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+            if (existing == null) {
+                claimed.put(key, future);
+            } else {
+                waiting.put(key, existing);
+            }
+        }
+        if (!claimed.isEmpty()) {
+            loadAll(claimed);
+            waiting.putAll(claimed);
+        }
+        for (Map.Entry<K, CompletableFuture<V>> entry : waiting.entrySet()) {
+            V value = await(entry.getKey(), entry.getValue());
+            if (value != null) {
+                result.put(entry.getKey(), value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public V peek(K key) {
+        return cache.peek(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        cache.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        cache.putAll(entries);
+    }
+
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        cache.invalidateAll(keys);
+    }
+
+    private void load(K key, CompletableFuture<V> future) {
+        try {
+            // Another load may have finished between our miss and claiming the key; peek so the
+            // re-check is not counted as a second miss
+            V value = cache.peek(key);
+            if (value == null) {
+                long start = System.nanoTime();
+                try {
+                    value = loader.load(key);
+                } finally {
+                    recordLoad(value != null, start);
+                }
+                if (value != null) {
+                    cache.put(key, value);
+                }
+            }
+            future.complete(value);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private void loadAll(Map<K, CompletableFuture<V>> claimed) {
+        long start = System.nanoTime();
+        try {
+            Map<K, V> loaded;
+            try {
+                loaded = loader.loadAll(Collections.unmodifiableSet(claimed.keySet()));
+            } catch (Throwable t) {
+                recordLoad(false, start);
+                throw t;
+            }
+            recordLoad(true, start);
+            for (Map.Entry<K, CompletableFuture<V>> entry : claimed.entrySet()) {
+                V value = loaded.get(entry.getKey());
+                if (value != null) {
+                    cache.put(entry.getKey(), value);
+                }
+                entry.getValue().complete(value);
+            }
+        } catch (Throwable t) {
+            for (CompletableFuture<V> future : claimed.values()) {
+                future.completeExceptionally(t);
+            }
+        } finally {
+            for (Map.Entry<K, CompletableFuture<V>> entry : claimed.entrySet()) {
+                inFlight.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void recordLoad(boolean success, long startNanos) {
+        StatsCounter counter = statsCounter;
+        if (counter == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        if (success) {
+            counter.recordLoadSuccess(elapsed);
+        } else {
+            counter.recordLoadFailure(elapsed);
+        }
+    }
+
+    private V await(K key, CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Failed to load key " + key, cause);
+        }
+    }
+}
+
+// 200 threads miss on the same key at once; the loader runs once.
+// Run: java lru.LoadingCacheDriver
+class LoadingCacheDriver {
+    public static void main(String[] args) throws InterruptedException {
+        AtomicInteger backendCalls = new AtomicInteger();
+        CacheLoader<String, String> backend = key -> {
+            backendCalls.incrementAndGet();
+            Thread.sleep(100); // slow backend
+            return "value-of-" + key;
+        };
+        LoadingCache<String, String> cache = new LoadingCache<>(
+                new ConcurrentCache<>(100, new LinkedLRUEvictionPolicy<>()), backend);
+
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[200];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    cache.get("hot");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+        System.out.println("Backend calls for 200 concurrent misses: " + backendCalls.get()); // 1
+
+        System.out.println(cache.getAsync("other").join());
+        System.out.println(cache.getAll(List.of("hot", "a", "b", "c")).keySet());
+        Iterator<String> once = List.of("hot", "d").iterator();
+        System.out.println(cache.getAll(() -> once).keySet()); // an Iterable that can be iterated once
+        System.out.println("Backend calls in total: " + backendCalls.get()); // 6
+    }
+}
@@ -0,0 +1,186 @@
+package lru;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Near cache: a small per-thread L0 in front of a shared ConcurrentCache. A read of a key the
+// thread has seen recently is served from its own LinkedHashMap and never touches the shared
+// cache's lock or its nodes; the only shared state on that path is the bus version, which stays
+// in every core's cache until something is written.
+// Coherence: the shared cache publishes every key it writes or removes on its InvalidationBus,
+// under its write lock, whoever made the change: puts through any wrapper, loads, background
+// refreshes, evictions, expiry reclamation and invalidations. Before each read a thread replays
+// the events it has not applied yet, or clears its L0 if it fell too far behind. So once a write
+// returns, no thread can read the old value from its L0.
+// Each copy also carries the entry's expiry and refresh time: past it, the read goes back to the
+// shared cache, which drops the expired entry or starts its refresh.
+// L0s live as long as their threads; pooled threads keep theirs.
+class NearCache<K, V> implements Cache<K, V> {
+    private static final class Copy<V> {
+        final V value;
+        final long deadline; // in the shared cache's clock, Long.MAX_VALUE = none
+
+        Copy(V value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class Local<K, V> extends LinkedHashMap<K, Copy<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        long version;                           // last bus version applied
+        final long[] deadline = new long[1];    // out parameter for the shared cache's get
+
+        Local(int capacity, long version) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.version = version;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Copy<V>> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private final ConcurrentCache<K, V> shared;
+    private final InvalidationBus<K> bus;
+    private final ThreadLocal<Local<K, V>> locals;
+
+    // Near caches over the same shared cache all follow its bus
+    public NearCache(ConcurrentCache<K, V> shared, int localCapacity) {
+        if (localCapacity <= 0) {
+            throw new IllegalArgumentException("Local capacity must be greater than zero");
+        }
+        this.shared = shared;
+        this.bus = shared.invalidationBus();
+        this.locals = ThreadLocal.withInitial(() -> new Local<>(localCapacity, bus.version()));
+    }
+
+    @Override
+    public V get(K key) {
+        Local<K, V> local = current();
+        Copy<V> copy = local.get(key);
+        if (copy != null) {
+            if (copy.deadline == Long.MAX_VALUE || copy.deadline - shared.now() > 0) {
+                return copy.value;
+            }
+            local.remove(key);
+        }
+        V value = shared.get(key, local.deadline);
+        if (value != null) {
+            local.put(key, new Copy<>(value, local.deadline[0]));
+        }
+        return value;
+    }
+
+    @Override
+    public V peek(K key) {
+        return shared.peek(key);
+    }
+
+    // The shared cache publishes the write itself
+    @Override
+    public void put(K key, V value) {
+        shared.put(key, value);
+    }
+
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        shared.invalidateAll(keys);
+    }
+
+    public InvalidationBus<K> bus() {
+        return bus;
+    }
+
+    // The calling thread's L0, brought up to date with the bus
+    private Local<K, V> current() {
+        Local<K, V> local = locals.get();
+        long version = bus.version();
+        if (version != local.version) {
+            if (!bus.replay(local.version, version, local::remove)) {
+                local.clear();
+            }
+            local.version = version;
+        }
+        return local;
+    }
+}
+
+// Reader threads over 1k hot keys, straight on a ConcurrentCache and through a NearCache, while
+// a writer keeps updating some of the keys straight on the shared cache; then checks every
+// reader sees the final values, and that an expired entry is not served from L0.
+// Run: java lru.NearCacheDriver
+class NearCacheDriver {
+    static final int KEYS = 1_000;
+    static final int THREADS = 8;
+    static final int READS = 2_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentCache<Integer, Integer> plain = new ConcurrentCache<>(10_000, new LinkedLRUEvictionPolicy<>());
+        run("ConcurrentCache", plain, plain);
+        ConcurrentCache<Integer, Integer> shared = new ConcurrentCache<>(10_000, new LinkedLRUEvictionPolicy<>());
+        run("NearCache", new NearCache<>(shared, 1_024), shared);
+
+        long[] now = {TimeUnit.HOURS.toNanos(1)};
+        ConcurrentCache<String, String> expiring = new ConcurrentCache<>(100, new LinkedLRUEvictionPolicy<>());
+        expiring.setTicker(() -> now[0]);
+        expiring.setExpireAfterWrite(1, TimeUnit.MINUTES);
+        NearCache<String, String> near = new NearCache<>(expiring, 16);
+        expiring.put("session", "token");
+        System.out.print(near.get("session"));
+        now[0] += TimeUnit.MINUTES.toNanos(2);
+        System.out.println(", after expiry: " + near.get("session")); // token, after expiry: null
+    }
+
+    // Readers go through cache, the writer straight to shared
+    static void run(String name, Cache<Integer, Integer> cache, ConcurrentCache<Integer, Integer> shared)
+            throws InterruptedException {
+        for (int i = 0; i < KEYS; i++) {
+            shared.put(i, 0);
+        }
+        CountDownLatch written = new CountDownLatch(1);
+        int[] stale = new int[1];
+        List<Thread> readers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            Thread reader = new Thread(() -> {
+                Random random = new Random();
+                for (int i = 0; i < READS; i++) {
+                    cache.get(random.nextInt(KEYS));
+                }
+                try {
+                    written.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int key = 0; key < KEYS; key += 10) {
+                    if (cache.get(key) != 1_000) {
+                        synchronized (stale) {
+                            stale[0]++;
+                        }
+                    }
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        for (int version = 1; version <= 1_000; version++) {
+            for (int key = 0; key < KEYS; key += 10) {
+                shared.put(key, version);
+            }
+        }
+        written.countDown();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%-16s %d reads in %d ms, stale reads after the writer finished: %d%n",
+                name, (long) THREADS * READS, millis, stale[0]);
+    }
+}
@@ -0,0 +1,14 @@
+package lru;
+
+// Why an entry left the cache
+public enum RemovalCause {
+    EXPLICIT,   // invalidated by the caller
+    REPLACED,   // overwritten by a put on the same key
+    SIZE,       // evicted to stay within capacity or maximum weight
+    EXPIRED;    // its time to live or idle time passed
+
+    // SIZE and EXPIRED are decided by the cache, the others by the caller
+    public boolean wasEvicted() {
+        return this == SIZE || this == EXPIRED;
+    }
+}
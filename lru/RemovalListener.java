@@ -0,0 +1,103 @@
+package lru;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// Told about every entry that leaves a cache, e.g. to write dirty values back to storage
+interface RemovalListener<K, V> {
+    void onRemoval(K key, V value, RemovalCause cause);
+
+    // Receives the notifications that were drained together, in removal order. Override to
+    // write a whole batch back at once; the default hands them to onRemoval one by one.
+    default void onRemovals(List<RemovalNotification<K, V>> batch) {
+        for (RemovalNotification<K, V> notification : batch) {
+            onRemoval(notification.key(), notification.value(), notification.cause());
+        }
+    }
+}
+
+// A write-back listener that sleeps on every batch does not slow the writers down; flush waits
+// for it to catch up, and replacing or closing the listener leaves no delivery thread behind.
+// Then a listener stuck for good only costs dropped notifications, and one that throws an Error
+// keeps getting later batches.
+// Run: java lru.RemovalListenerDriver
+class RemovalListenerDriver {
+    public static void main(String[] args) throws InterruptedException {
+        Map<RemovalCause, Integer> counts = new ConcurrentHashMap<>();
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(100, new LinkedLRUEvictionPolicy<>());
+        cache.setRemovalListener(new RemovalListener<Integer, String>() {
+            @Override
+            public void onRemoval(Integer key, String value, RemovalCause cause) {
+                counts.merge(cause, 1, Integer::sum);
+            }
+
+            @Override
+            public void onRemovals(List<RemovalNotification<Integer, String>> batch) {
+                try {
+                    Thread.sleep(5); // slow backend write per batch
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                RemovalListener.super.onRemovals(batch);
+            }
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, "v" + i);          // 9,900 SIZE evictions
+        }
+        cache.put(9_999, "replaced");       // REPLACED
+        cache.invalidate(9_998);            // EXPLICIT
+        cache.invalidate(9_997);            // EXPLICIT
+        System.out.printf("Writes done in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+        cache.flushRemovals();
+        System.out.printf("All delivered after %d ms: %s%n", (System.nanoTime() - start) / 1_000_000, counts);
+
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 5; i++) {
+            cache.setRemovalListener((key, value, cause) -> written.add(value));
+        }
+        cache.invalidate(0);
+        cache.invalidate(9_999);
+        cache.close();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (listenerThreads() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10); // replaced listeners end on their own threads
+        }
+        System.out.println("Written back on close: " + written + ", listener threads left: " + listenerThreads());
+
+        CountDownLatch stuck = new CountDownLatch(1);
+        cache.setRemovalListener((key, value, cause) -> {
+            try {
+                stuck.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 16);
+        start = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(i, "w" + i);
+        }
+        System.out.printf("1000 writes past a stuck listener in %d ms, %d notifications dropped%n",
+                (System.nanoTime() - start) / 1_000_000, cache.droppedRemovals());
+        stuck.countDown();
+
+        List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+        cache.setRemovalListener((key, value, cause) -> {
+            if (key == 998) {
+                throw new AssertionError("listener bug");
+            }
+            delivered.add(key);
+        });
+        cache.invalidate(998);
+        cache.flushRemovals();
+        cache.invalidate(999);
+        cache.close();
+        System.out.println("Delivered after a listener Error: " + delivered); // [999]
+    }
+
+    static long listenerThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("cache-removal-listener")).count();
+    }
+}
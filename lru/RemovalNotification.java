@@ -0,0 +1,30 @@
+package lru;
+
+final class RemovalNotification<K, V> {
+    private final K key;
+    private final V value;
+    private final RemovalCause cause;
+
+    RemovalNotification(K key, V value, RemovalCause cause) {
+        this.key = key;
+        this.value = value;
+        this.cause = cause;
+    }
+
+    K key() {
+        return key;
+    }
+
+    V value() {
+        return value;
+    }
+
+    RemovalCause cause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + value + " (" + cause + ")";
+    }
+}
@@ -0,0 +1,164 @@
+package lru;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Delivers removal notifications off the caller's thread. Caches collect them under their write
+// lock and enqueue them once it is released; one daemon thread drains the queue in batches and
+// calls the listener, so a slow listener delays notifications, never writers. The queue is
+// bounded and enqueue never waits: once a listener falls capacity notifications behind, further
+// ones are dropped, counted and logged until it catches up.
+// A listener that throws, even an Error, loses only its own batch; the failure is logged and
+// counted and delivery goes on.
+class RemovalNotifier<K, V> {
+    private static final Logger LOGGER = Logger.getLogger(RemovalNotifier.class.getName());
+    private static final int MAX_BATCH = 256;
+    static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final RemovalListener<K, V> listener;
+    private final ArrayBlockingQueue<RemovalNotification<K, V>> queue;
+    private final Thread deliveryThread;
+    private final RemovalNotification<K, V> stop; // queued by shutdown, ends the delivery thread
+    private long enqueued;          // guarded by this
+    private long delivered;         // guarded by this, including failed ones
+    private long failed;            // guarded by this
+    private long dropped;           // guarded by this
+    private int enqueuing;          // guarded by this, writers between startEnqueue and enqueue
+    private boolean closed;         // guarded by this
+
+    RemovalNotifier(RemovalListener<K, V> listener, int capacity) {
+        this.listener = listener;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.stop = new RemovalNotification<>(null, null, null);
+        this.deliveryThread = new Thread(this::deliver, "cache-removal-listener");
+        deliveryThread.setDaemon(true);
+        deliveryThread.start();
+    }
+
+    // Called under the cache's write lock by a writer holding notifications, which must then call
+    // enqueue; a shutdown that follows waits for that enqueue
+    synchronized void startEnqueue() {
+        if (closed) {
+            throw new IllegalStateException("Removal notifier is closed");
+        }
+        enqueuing++;
+    }
+
+    // Called after the cache's write lock is released. Never blocks.
+    void enqueue(List<RemovalNotification<K, V>> notifications) {
+        synchronized (this) {
+            int lost = 0;
+            for (RemovalNotification<K, V> notification : notifications) {
+                if (queue.offer(notification)) {
+                    enqueued++;
+                } else {
+                    lost++;
+                }
+            }
+            if (lost > 0) {
+                long before = dropped;
+                dropped += lost;
+                if (Long.highestOneBit(before) != Long.highestOneBit(dropped)) { // log at 1, 2, 4, 8... drops
+                    LOGGER.warning("Removal listener is " + queue.size() + " notifications behind, "
+                            + dropped + " dropped so far");
+                }
+            }
+            if (--enqueuing == 0 && closed) {
+                notifyAll();
+            }
+        }
+    }
+
+    // Waits until every notification enqueued before the call has been handed to the listener
+    void flush() throws InterruptedException {
+        synchronized (this) {
+            long target = enqueued;
+            while (delivered < target) {
+                wait();
+            }
+        }
+    }
+
+    // Stops taking notifications; the delivery thread ends once it has delivered the ones already
+    // queued, including those of writers that started enqueuing before. Callers make sure no new
+    // writer starts concurrently.
+    void shutdown() {
+        boolean interrupted = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            while (enqueuing > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        while (true) {
+            try {
+                queue.put(stop);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true; // the stop marker must get in, or the thread never ends
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // shutdown, then waits until everything queued was delivered
+    void close() throws InterruptedException {
+        shutdown();
+        deliveryThread.join();
+    }
+
+    synchronized long failedCount() {
+        return failed;
+    }
+
+    synchronized long droppedCount() {
+        return dropped;
+    }
+
+    private void deliver() {
+        List<RemovalNotification<K, V>> batch = new ArrayList<>(MAX_BATCH);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue; // only shutdown ends delivery, queued notifications must not be lost
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            int end = batch.indexOf(stop);
+            if (end >= 0) {
+                batch.subList(end, batch.size()).clear(); // nothing is queued after the marker
+                stopping = true;
+                if (batch.isEmpty()) {
+                    break;
+                }
+            }
+            boolean ok = false;
+            try {
+                listener.onRemovals(Collections.unmodifiableList(batch));
+                ok = true;
+            } catch (Throwable e) { // an Error from the listener must not end delivery
+                LOGGER.log(Level.WARNING, "Removal listener failed on a batch of " + batch.size(), e);
+            }
+            synchronized (this) {
+                delivered += batch.size();
+                if (!ok) {
+                    failed += batch.size();
+                }
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package lru;
+
+import java.util.*;
+import java.util.concurrent.locks.*;
+import java.util.function.Supplier;
+
+// Lock-striped cache: keys are spread over independent segments by hash, and each segment owns
+// its lock, map and eviction ordering. Threads working on different segments never contend, so
+// reads scale across cores. LRU order is kept per segment, which makes the global capacity and
+// the eviction order approximate (each segment holds at most ceil(capacity / segments) entries).
+class SegmentedCache<K, V> implements Cache<K, V> {
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+
+    public SegmentedCache(int capacity, int concurrencyLevel) {
+        this(capacity, concurrencyLevel, LinkedLRUEvictionPolicy::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    public SegmentedCache(int capacity, int concurrencyLevel, Supplier<? extends EvictionPolicy<K>> policyFactory) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be greater than zero");
+        }
+        // Power of two so the segment can be picked with a mask, never more segments than entries
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && segmentCount < capacity) {
+            segmentCount <<= 1;
+        }
+        int segmentCapacity = (capacity + segmentCount - 1) / segmentCount;
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentCapacity, policyFactory.get());
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    @Override
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    // Keys are grouped by segment so every segment lock is taken once per batch
+    @Override
+    public Map<K, V> getAll(Iterable<? extends K> keys) {
+        Map<K, V> hits = new LinkedHashMap<>();
+        List<K> batch = toList(keys);
+        int[] bounds = new int[segments.length + 1];
+        int[] order = orderBySegment(batch, bounds);
+        for (int s = 0; s < segments.length; s++) {
+            if (bounds[s] < bounds[s + 1]) {
+                segments[s].getAll(batch, order, bounds[s], bounds[s + 1], hits);
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        List<K> batch = toList(entries.keySet());
+        int[] bounds = new int[segments.length + 1];
+        int[] order = orderBySegment(batch, bounds);
+        for (int s = 0; s < segments.length; s++) {
+            if (bounds[s] < bounds[s + 1]) {
+                segments[s].putAll(batch, order, bounds[s], bounds[s + 1], entries);
+            }
+        }
+    }
+
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        List<K> batch = toList(keys);
+        int[] bounds = new int[segments.length + 1];
+        int[] order = orderBySegment(batch, bounds);
+        for (int s = 0; s < segments.length; s++) {
+            if (bounds[s] < bounds[s + 1]) {
+                segments[s].invalidateAll(batch, order, bounds[s], bounds[s + 1]);
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // Counting sort of the batch by segment: order[bounds[s]..bounds[s + 1]) are the positions
+    // in batch of the keys that belong to segment s
+    private int[] orderBySegment(List<K> batch, int[] bounds) {
+        int[] segmentOf = new int[batch.size()];
+        for (int i = 0; i < segmentOf.length; i++) {
+            segmentOf[i] = segmentIndex(batch.get(i));
+            bounds[segmentOf[i] + 1]++;
+        }
+        for (int s = 0; s < segments.length; s++) {
+            bounds[s + 1] += bounds[s];
+        }
+        int[] next = Arrays.copyOf(bounds, segments.length);
+        int[] order = new int[segmentOf.length];
+        for (int i = 0; i < segmentOf.length; i++) {
+            order[next[segmentOf[i]]++] = i;
+        }
+        return order;
+    }
+
+    private static <K> List<K> toList(Iterable<? extends K> keys) {
+        List<K> list = new ArrayList<>();
+        for (K key : keys) {
+            list.add(key);
+        }
+        return list;
+    }
+
+    Segment<K, V> segmentFor(K key) {
+        return segments[segmentIndex(key)];
+    }
+
+    private int segmentIndex(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16); // let the high bits take part in picking a segment
+        return h & segmentMask;
+    }
+
+    // A segment is a small single-lock LRU cache. A plain lock is enough here: every hit
+    // reorders the policy, so a read-write lock would not let readers run in parallel anyway.
+    static final class Segment<K, V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<K, V> map = new HashMap<>();
+        final EvictionPolicy<K> evictionPolicy;
+        final int capacity;
+
+        Segment(int capacity, EvictionPolicy<K> evictionPolicy) {
+            this.capacity = capacity;
+            this.evictionPolicy = evictionPolicy;
+        }
+
+        V get(K key) {
+            lock.lock();
+            try {
+                V value = map.get(key);
+                if (value != null) {
+                    evictionPolicy.keyAccessed(key);
+                }
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(K key, V value) {
+            lock.lock();
+            try {
+                putLocked(key, value);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // The batch methods handle batch.get(order[i]) for i in [from, to), under one lock
+        void getAll(List<K> batch, int[] order, int from, int to, Map<K, V> hits) {
+            lock.lock();
+            try {
+                for (int i = from; i < to; i++) {
+                    K key = batch.get(order[i]);
+                    V value = map.get(key);
+                    if (value != null) {
+                        evictionPolicy.keyAccessed(key);
+                        hits.put(key, value);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void putAll(List<K> batch, int[] order, int from, int to, Map<? extends K, ? extends V> entries) {
+            lock.lock();
+            try {
+                for (int i = from; i < to; i++) {
+                    K key = batch.get(order[i]);
+                    putLocked(key, entries.get(key));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void invalidateAll(List<K> batch, int[] order, int from, int to) {
+            lock.lock();
+            try {
+                for (int i = from; i < to; i++) {
+                    K key = batch.get(order[i]);
+                    if (map.remove(key) != null) {
+                        evictionPolicy.keyRemoved(key);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Must hold lock
+        private void putLocked(K key, V value) {
+            if (!map.containsKey(key) && map.size() >= capacity) {
+                if (!evictionPolicy.admit(key)) {
+                    return;
+                }
+                K evictedKey = evictionPolicy.evictKey();
+                if (evictedKey != null) {
+                    map.remove(evictedKey);
+                }
+            }
+            map.put(key, value);
+            evictionPolicy.keyAccessed(key);
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return map.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
+
+// Multi-threaded read-heavy comparison of ConcurrentCache and SegmentedCache.
+// Run: java lru.SegmentedCacheDriver
+class SegmentedCacheDriver {
+    public static void main(String[] args) throws InterruptedException {
+        int capacity = 100_000;
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        Cache<Integer, Integer> single = new ConcurrentCache<>(capacity, new LinkedLRUEvictionPolicy<>());
+        Cache<Integer, Integer> segmented = new SegmentedCache<>(capacity, 64);
+        System.out.printf("ConcurrentCache  %d threads: %,.0f ops/s%n", threads, measure(single, capacity, threads));
+        System.out.printf("SegmentedCache   %d threads: %,.0f ops/s%n", threads, measure(segmented, capacity, threads));
+    }
+
+    static double measure(Cache<Integer, Integer> cache, int capacity, int threads) throws InterruptedException {
+        for (int i = 0; i < capacity; i++) {
+            cache.put(i, i);
+        }
+        int opsPerThread = 500_000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < opsPerThread; i++) {
+                    int key = random.nextInt(capacity);
+                    if (i % 10 == 0) {
+                        cache.put(key, i);   // 10% writes
+                    } else {
+                        cache.get(key);
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+        return (long) threads * opsPerThread * 1_000_000_000.0 / (System.nanoTime() - start);
+    }
+}
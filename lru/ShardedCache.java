@@ -0,0 +1,435 @@
+package lru;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Spreads keys over named ConcurrentCache shards with a consistent-hash ring. Every shard owns
+// VIRTUAL_NODES points on the ring and a key belongs to the first point at or after its hash, so
+// adding or removing a shard only moves the keys in the ranges that change hands, about 1/N of
+// them, and those are moved right away instead of turning into misses.
+// Reads go straight to an immutable ring snapshot without locking. Writes and ring changes share
+// a read-write lock, so a put can never land on a shard that a ring change has just drained.
+//
+// Hot key replication is optional: a sample of the reads feeds a frequency sketch, and keys that
+// get hot are copied to the next replicas shards on the ring. Reads of a hot key are spread over
+// those copies, so one hot key no longer funnels all its traffic into one shard's lock.
+// Puts and invalidations of a hot key update all its copies. Reads of hot keys are sampled too,
+// and whenever the sketch ages its counters, hot keys that have cooled down lose their copies,
+// which makes room for keys that got hot since.
+class ShardedCache<K, V> implements Cache<K, V> {
+    private static final int VIRTUAL_NODES = 160;
+    private static final int SAMPLE_MASK = 15; // one read in 16 goes into the sketch
+
+    // Immutable; replaced as a whole when shards come and go
+    private static final class Ring<K, V> {
+        final long[] points;                  // sorted
+        final ConcurrentCache<K, V>[] owners; // owners[i] owns points[i]
+        final Map<String, ConcurrentCache<K, V>> shards;
+
+        Ring(Map<String, ConcurrentCache<K, V>> shards) {
+            this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+            TreeMap<Long, ConcurrentCache<K, V>> ring = new TreeMap<>();
+            for (Map.Entry<String, ConcurrentCache<K, V>> shard : shards.entrySet()) {
+                for (int v = 0; v < VIRTUAL_NODES; v++) {
+                    ring.put(hash(shard.getKey() + "#" + v), shard.getValue());
+                }
+            }
+            this.points = new long[ring.size()];
+            this.owners = newArray(ring.size());
+            int i = 0;
+            for (Map.Entry<Long, ConcurrentCache<K, V>> point : ring.entrySet()) {
+                points[i] = point.getKey();
+                owners[i++] = point.getValue();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <K, V> ConcurrentCache<K, V>[] newArray(int length) {
+            return (ConcurrentCache<K, V>[]) new ConcurrentCache<?, ?>[length];
+        }
+
+        // Index of the first point at or after hash, wrapping around
+        int slot(long hash) {
+            int i = Arrays.binarySearch(points, hash);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i == points.length ? 0 : i;
+        }
+
+        ConcurrentCache<K, V> owner(Object key) {
+            return owners[slot(hash(key))];
+        }
+
+        // The owner followed by up to replicas further distinct shards clockwise
+        List<ConcurrentCache<K, V>> ownerAndReplicas(Object key, int replicas) {
+            List<ConcurrentCache<K, V>> result = new ArrayList<>(replicas + 1);
+            int start = slot(hash(key));
+            for (int i = 0; i < owners.length && result.size() <= replicas; i++) {
+                ConcurrentCache<K, V> shard = owners[(start + i) % owners.length];
+                if (!result.contains(shard)) {
+                    result.add(shard);
+                }
+            }
+            return result;
+        }
+    }
+
+    // Hot key replication settings, published as a whole
+    private static final class Replication {
+        final int replicas;
+        final int threshold;
+        final int maxHotKeys;
+        final WTinyLfuEvictionPolicy.FrequencySketch sketch; // guarded by itself
+
+        Replication(int replicas, int threshold, int maxHotKeys) {
+            this.replicas = replicas;
+            this.threshold = threshold;
+            this.maxHotKeys = maxHotKeys;
+            this.sketch = new WTinyLfuEvictionPolicy.FrequencySketch(maxHotKeys * 16);
+        }
+    }
+
+    private final ReadWriteLock lock;
+    private volatile Ring<K, V> ring;
+    private volatile Replication replication; // null = hot key replication off
+    private final Set<K> hotKeys;
+
+    public ShardedCache(Map<String, ConcurrentCache<K, V>> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        this.lock = new ReentrantReadWriteLock();
+        this.ring = new Ring<>(shards);
+        this.hotKeys = ConcurrentHashMap.newKeySet();
+    }
+
+    // Copies keys read about threshold * 16 times in a sketch period (10 x sampleSize sampled
+    // reads) to replicas more shards, tracking at most maxHotKeys of them. threshold is at most 15.
+    public void enableHotKeyReplication(int replicas, int threshold, int maxHotKeys) {
+        if (replicas <= 0 || threshold <= 0 || threshold > 15 || maxHotKeys <= 0) {
+            throw new IllegalArgumentException("Replicas, threshold (1-15) and max hot keys must be positive");
+        }
+        lock.writeLock().lock();
+        try {
+            dropReplicas(ring);
+            this.replication = new Replication(replicas, threshold, maxHotKeys);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        Ring<K, V> current = ring;
+        Replication hot = replication;
+        if (hot != null) {
+            if (hotKeys.contains(key)) {
+                List<ConcurrentCache<K, V>> copies = current.ownerAndReplicas(key, hot.replicas);
+                int random = ThreadLocalRandom.current().nextInt();
+                V value = copies.get((random >>> 4) % copies.size()).get(key);
+                if (value == null) {
+                    value = copies.get(0).get(key); // a copy may have been evicted
+                }
+                if (value != null && (random & SAMPLE_MASK) == 0) {
+                    recordHit(hot, key); // keeps the key hot while it is read
+                }
+                return value;
+            }
+            V value = current.owner(key).get(key);
+            if (value != null && (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0) {
+                recordHit(hot, key);
+            }
+            return value;
+        }
+        return current.owner(key).get(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        lock.readLock().lock();
+        try {
+            Replication hot = replication;
+            if (hot != null && hotKeys.contains(key)) {
+                for (ConcurrentCache<K, V> shard : ring.ownerAndReplicas(key, hot.replicas)) {
+                    shard.put(key, value);
+                }
+            } else {
+                ring.owner(key).put(key, value);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void invalidateAll(Iterable<? extends K> keys) {
+        lock.readLock().lock();
+        try {
+            Replication hot = replication;
+            for (K key : keys) {
+                if (hot != null && hotKeys.remove(key)) {
+                    for (ConcurrentCache<K, V> shard : ring.ownerAndReplicas(key, hot.replicas)) {
+                        shard.invalidate(key);
+                    }
+                } else {
+                    ring.owner(key).invalidate(key);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public V peek(K key) {
+        return ring.owner(key).peek(key);
+    }
+
+    // Adds a shard and moves over the keys it now owns; returns how many moved
+    public int addShard(String name, ConcurrentCache<K, V> shard) {
+        lock.writeLock().lock();
+        try {
+            Ring<K, V> old = ring;
+            if (old.shards.containsKey(name)) {
+                throw new IllegalArgumentException("Shard " + name + " already exists");
+            }
+            Map<String, ConcurrentCache<K, V>> shards = new LinkedHashMap<>(old.shards);
+            shards.put(name, shard);
+            return rebalance(old, new Ring<>(shards), old.shards.values());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Removes a shard and hands its keys to their new owners; returns the removed shard
+    public ConcurrentCache<K, V> removeShard(String name) {
+        lock.writeLock().lock();
+        try {
+            Ring<K, V> old = ring;
+            if (!old.shards.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown shard " + name);
+            }
+            if (old.shards.size() == 1) {
+                throw new IllegalStateException("Cannot remove the last shard");
+            }
+            Map<String, ConcurrentCache<K, V>> shards = new LinkedHashMap<>(old.shards);
+            ConcurrentCache<K, V> removed = shards.remove(name);
+            rebalance(old, new Ring<>(shards), Collections.singletonList(removed));
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Set<String> shardNames() {
+        return ring.shards.keySet();
+    }
+
+    // Must hold the write lock. Drops the hot key copies (they sit on the old ring's successors),
+    // switches rings, then moves every key of sources whose owner changed, with the time it has
+    // left to live. The new owner keeps a value it already has.
+    private int rebalance(Ring<K, V> old, Ring<K, V> next, Collection<ConcurrentCache<K, V>> sources) {
+        dropReplicas(old);
+        ring = next;
+        int moved = 0;
+        for (ConcurrentCache<K, V> source : sources) {
+            for (K key : source.keys()) {
+                ConcurrentCache<K, V> owner = next.owner(key);
+                if (owner == source) {
+                    continue;
+                }
+                if (source.moveTo(key, owner)) {
+                    moved++;
+                }
+            }
+        }
+        return moved;
+    }
+
+    // Must hold the write lock. Drops every hot key copy and forgets the hot keys.
+    private void dropReplicas(Ring<K, V> current) {
+        Replication hot = replication;
+        if (hot != null) {
+            for (K key : hotKeys) {
+                List<ConcurrentCache<K, V>> copies = current.ownerAndReplicas(key, hot.replicas);
+                for (ConcurrentCache<K, V> copy : copies.subList(1, copies.size())) {
+                    copy.invalidate(key);
+                }
+            }
+        }
+        hotKeys.clear();
+    }
+
+    // Promotes a key once the sampled reads say it is hot. Under the write lock no put can run
+    // between reading the owner's value and copying it, and puts that come after see the key in
+    // hotKeys and write every copy.
+    private void recordHit(Replication hot, K key) {
+        int frequency;
+        boolean aged;
+        synchronized (hot.sketch) {
+            aged = hot.sketch.increment(key);
+            frequency = hot.sketch.frequency(key);
+        }
+        if (aged) {
+            demoteCold(hot);
+        }
+        if (frequency < hot.threshold || hotKeys.size() >= hot.maxHotKeys || hotKeys.contains(key)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (replication != hot || hotKeys.size() >= hot.maxHotKeys || hotKeys.contains(key)) {
+                return;
+            }
+            V current = ring.owner(key).peek(key);
+            if (current == null) {
+                return; // evicted or invalidated meanwhile
+            }
+            hotKeys.add(key);
+            List<ConcurrentCache<K, V>> copies = ring.ownerAndReplicas(key, hot.replicas);
+            for (ConcurrentCache<K, V> copy : copies.subList(1, copies.size())) {
+                copy.put(key, current);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Demotes the hot keys that have cooled down, right after the sketch halved its counters. A key
+    // still read at the promotion rate is at threshold / 2 or more by then; one below it has been
+    // read less than that over the last period.
+    private void demoteCold(Replication hot) {
+        lock.writeLock().lock();
+        try {
+            if (replication != hot) {
+                return;
+            }
+            for (Iterator<K> keys = hotKeys.iterator(); keys.hasNext(); ) {
+                K key = keys.next();
+                int frequency;
+                synchronized (hot.sketch) {
+                    frequency = hot.sketch.frequency(key);
+                }
+                if (frequency * 2 >= hot.threshold) {
+                    continue;
+                }
+                keys.remove();
+                List<ConcurrentCache<K, V>> copies = ring.ownerAndReplicas(key, hot.replicas);
+                for (ConcurrentCache<K, V> copy : copies.subList(1, copies.size())) {
+                    copy.invalidate(key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Set<K> hotKeys() {
+        return Collections.unmodifiableSet(hotKeys);
+    }
+
+    static long hash(Object key) {
+        long h = key.hashCode() * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
+
+// Four local shards: how many keys move when a fifth joins and when one leaves, and how hot key
+// replication spreads the reads of a few very hot keys over the shards.
+// Run: java lru.ShardedCacheDriver
+class ShardedCacheDriver {
+    public static void main(String[] args) {
+        Map<String, StatsCounter> counters = new LinkedHashMap<>();
+        Map<String, ConcurrentCache<Integer, String>> shards = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            shards.put("node-" + i, shard("node-" + i, counters));
+        }
+        ShardedCache<Integer, String> cache = new ShardedCache<>(shards);
+        int keys = 100_000;
+        for (int i = 0; i < keys; i++) {
+            cache.put(i, "v" + i);
+        }
+        int moved = cache.addShard("node-4", shard("node-4", counters));
+        System.out.printf("Adding node-4 moved %d keys (%.1f%%, ideal 20%%)%n", moved, 100.0 * moved / keys);
+        cache.removeShard("node-1");
+        counters.remove("node-1");
+        int found = 0;
+        for (int i = 0; i < keys; i++) {
+            if (cache.get(i) != null) found++;
+        }
+        System.out.println("After removing node-1 all keys still found: " + (found == keys));
+
+        cache.enableHotKeyReplication(2, 8, 64);
+        Map<String, Long> before = new HashMap<>();
+        counters.forEach((name, counter) -> before.put(name, counter.getHitCount()));
+        Random random = new Random(1);
+        for (int i = 0; i < 200_000; i++) {
+            cache.get(random.nextInt(4)); // four very hot keys
+        }
+        counters.forEach((name, counter) ->
+                System.out.println(name + " served " + (counter.getHitCount() - before.get(name)) + " hot reads"));
+
+        for (int key = 0; key < 4; key++) {
+            cache.put(key, "updated");
+        }
+        int stale = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (!"updated".equals(cache.get(i % 4))) stale++;
+        }
+        System.out.println("Stale hot reads after an update: " + stale);
+
+        // The heat moves to four other keys: the old ones cool down and make room
+        cache.enableHotKeyReplication(2, 8, 4);
+        for (int i = 0; i < 200_000; i++) {
+            cache.get(random.nextInt(4));
+        }
+        System.out.println("Hot keys: " + new TreeSet<>(cache.hotKeys()));
+        for (int i = 0; i < 1_000_000; i++) {
+            cache.get(i % 2 == 0 ? 10 + random.nextInt(4) : random.nextInt(keys)); // and a cold background
+        }
+        System.out.println("Hot keys after the heat moved: " + new TreeSet<>(cache.hotKeys()));
+
+        // Moved keys keep their time to live: written 9 of 10 minutes ago, gone 2 minutes later
+        long[] now = {0};
+        Map<String, ConcurrentCache<Integer, String>> timed = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            timed.put("node-" + i, timedShard(now));
+        }
+        ShardedCache<Integer, String> expiring = new ShardedCache<>(timed);
+        for (int i = 0; i < 1_000; i++) {
+            expiring.put(i, "v" + i);
+        }
+        now[0] += TimeUnit.MINUTES.toNanos(9);
+        int movedTimed = expiring.addShard("node-4", timedShard(now));
+        now[0] += TimeUnit.MINUTES.toNanos(2);
+        int alive = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (expiring.get(i) != null) alive++;
+        }
+        System.out.println("Moved " + movedTimed + " keys, live after their TTL: " + alive);
+    }
+
+    static ConcurrentCache<Integer, String> timedShard(long[] now) {
+        ConcurrentCache<Integer, String> shard = new ConcurrentCache<>(10_000, new LinkedLRUEvictionPolicy<>());
+        shard.setTicker(() -> now[0]);
+        shard.setExpireAfterWrite(10, TimeUnit.MINUTES);
+        return shard;
+    }
+
+    static ConcurrentCache<Integer, String> shard(String name, Map<String, StatsCounter> counters) {
+        ConcurrentCache<Integer, String> shard = new ConcurrentCache<>(100_000, new LinkedLRUEvictionPolicy<>());
+        StatsCounter counter = new StatsCounter();
+        shard.setStatsCounter(counter);
+        counters.put(name, counter);
+        return shard;
+    }
+}
@@ -0,0 +1,154 @@
+package lru;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Accumulates cache statistics on the hot path. Every counter is a LongAdder, which stripes its
+// cells across contending threads, so recording costs a few ns and never serializes readers.
+// Caches only call it when a counter was set, so statistics are free when turned off.
+// Public so lru_self.LruCache can record into it too.
+public class StatsCounter implements CacheStatsMXBean {
+    private static final int HISTOGRAM_BUCKETS = 32; // up to 2^31 us, ~36 minutes
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder[] removals;
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder[] loadTimeHistogram;
+
+    public StatsCounter() {
+        removals = new LongAdder[RemovalCause.values().length];
+        for (int i = 0; i < removals.length; i++) {
+            removals[i] = new LongAdder();
+        }
+        loadTimeHistogram = new LongAdder[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            loadTimeHistogram[i] = new LongAdder();
+        }
+    }
+
+    public void recordHits(int count) {
+        hits.add(count);
+    }
+
+    public void recordMisses(int count) {
+        misses.add(count);
+    }
+
+    public void recordRemoval(RemovalCause cause) {
+        removals[cause.ordinal()].increment();
+    }
+
+    public void recordLoadSuccess(long loadTimeNanos) {
+        loadSuccesses.increment();
+        recordLoadTime(loadTimeNanos);
+    }
+
+    public void recordLoadFailure(long loadTimeNanos) {
+        loadFailures.increment();
+        recordLoadTime(loadTimeNanos);
+    }
+
+    private void recordLoadTime(long nanos) {
+        totalLoadTime.add(nanos);
+        long micros = Math.max(0, nanos / 1_000);
+        int bucket = 64 - Long.numberOfLeadingZeros(micros); // 0 for < 1 us, i for [2^(i-1), 2^i) us
+        loadTimeHistogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)].increment();
+    }
+
+    // Consistent enough for monitoring: each counter is read once, not all atomically
+    public CacheStats snapshot() {
+        long[] removalCounts = new long[removals.length];
+        for (int i = 0; i < removals.length; i++) {
+            removalCounts[i] = removals[i].sum();
+        }
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = loadTimeHistogram[i].sum();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), removalCounts, loadSuccesses.sum(),
+                loadFailures.sum(), totalLoadTime.sum(), histogram);
+    }
+
+    // Publishes these statistics as lru:type=CacheStats,name=<cacheName> on the platform MBean server
+    public ObjectName registerMBean(String cacheName) {
+        try {
+            ObjectName name = new ObjectName("lru:type=CacheStats,name=" + ObjectName.quote(cacheName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            return name;
+        } catch (JMException e) {
+            throw new RuntimeException("Could not register cache statistics MBean for " + cacheName, e);
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        return snapshot().hitRate();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return snapshot().evictionCount();
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+        return loadSuccesses.sum();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return loadFailures.sum();
+    }
+
+    @Override
+    public double getAverageLoadPenaltyNanos() {
+        return snapshot().averageLoadPenaltyNanos();
+    }
+}
+
+// Statistics of a LoadingCache over a ConcurrentCache sharing one counter, published over JMX.
+// Run: java lru.CacheStatsDriver   (then inspect lru:type=CacheStats with jconsole while it sleeps)
+class CacheStatsDriver {
+    public static void main(String[] args) throws InterruptedException {
+        StatsCounter counter = new StatsCounter();
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(100, new LinkedLRUEvictionPolicy<>());
+        cache.setStatsCounter(counter);
+        LoadingCache<Integer, String> loading = new LoadingCache<>(cache, key -> {
+            if (key % 50 == 0) {
+                throw new IllegalStateException("backend down for " + key);
+            }
+            return "value-" + key;
+        });
+        loading.setStatsCounter(counter);
+        counter.registerMBean("driver");
+
+        java.util.Random random = new java.util.Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            try {
+                loading.get((int) (300 * Math.pow(random.nextDouble(), 2)));
+            } catch (RuntimeException e) {
+                // failed loads are counted and not cached
+            }
+        }
+        cache.invalidate(1);
+        System.out.println(cache.stats());
+        if (args.length > 0) {
+            Thread.sleep(Long.parseLong(args[0]) * 1000);
+        }
+    }
+}
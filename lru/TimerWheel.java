@@ -0,0 +1,140 @@
+package lru;
+
+import java.util.function.Consumer;
+
+// Intrusive links for nodes scheduled on a TimerWheel, so scheduling never allocates
+abstract class TimerNode {
+    TimerNode timerPrev;
+    TimerNode timerNext;
+
+    // Absolute time (same clock as TimerWheel.advance) at which the node expires; may move later
+    // after it was scheduled, e.g. on access, the wheel then simply reschedules it
+    abstract long expiresAt();
+
+    boolean isScheduled() {
+        return timerPrev != null;
+    }
+}
+
+// Hierarchical timing wheel: level 0 has 64 buckets of ~1 ms, each further level has 64 buckets
+// 64 times wider (~67 ms, ~4.3 s, ~4.6 min, ~4.9 h). A node is hashed into the finest level whose
+// range covers its deadline, and advancing the clock only visits the buckets whose time has come,
+// so scheduling, cancelling and expiring are all amortized O(1), with no scan over all entries.
+// Nodes from coarse buckets whose deadline is not due yet cascade down to a finer level.
+// Not thread-safe; ConcurrentCache only touches it under its write lock.
+class TimerWheel<N extends TimerNode> {
+    private static final int LEVELS = 5;
+    private static final int BUCKETS = 64;
+    private static final int[] SHIFTS = {20, 26, 32, 38, 44}; // tick of level i is 2^SHIFTS[i] ns
+
+    private final TimerNode[][] wheel;
+    private final Consumer<N> onExpired;
+    private final long origin; // times are kept relative to this so they are never negative
+    private long time;
+
+    TimerWheel(long now, Consumer<N> onExpired) {
+        this.origin = now;
+        this.onExpired = onExpired;
+        this.wheel = new TimerNode[LEVELS][BUCKETS];
+        for (TimerNode[] level : wheel) {
+            for (int b = 0; b < BUCKETS; b++) {
+                TimerNode sentinel = new Sentinel();
+                sentinel.timerPrev = sentinel;
+                sentinel.timerNext = sentinel;
+                level[b] = sentinel;
+            }
+        }
+    }
+
+    // (Re)schedules node for its current expiresAt()
+    void schedule(N node) {
+        if (node.isScheduled()) {
+            deschedule(node);
+        }
+        long deadline = Math.max(relative(node.expiresAt()), time);
+        TimerNode bucket = null;
+        for (int level = 0; level < LEVELS; level++) {
+            // Level 0 uses the tick right after the deadline, so the node is due when its bucket
+            // is visited. Coarser levels use the deadline's own tick: when that bucket is visited
+            // the node is either due or cascades down to a finer level.
+            long tick = (deadline >>> SHIFTS[level]) + (level == 0 ? 1 : 0);
+            long ahead = tick - (time >>> SHIFTS[level]);
+            if (ahead >= 1 && ahead <= BUCKETS) {
+                bucket = wheel[level][(int) (tick & (BUCKETS - 1))];
+                break;
+            }
+        }
+        if (bucket == null) {
+            // Further away than the coarsest level covers: park it in its furthest bucket, it is
+            // rescheduled when that bucket comes up
+            long tick = (time >>> SHIFTS[LEVELS - 1]) + BUCKETS;
+            bucket = wheel[LEVELS - 1][(int) (tick & (BUCKETS - 1))];
+        }
+        node.timerPrev = bucket.timerPrev;
+        node.timerNext = bucket;
+        bucket.timerPrev.timerNext = node;
+        bucket.timerPrev = node;
+    }
+
+    void deschedule(N node) {
+        if (!node.isScheduled()) {
+            return;
+        }
+        node.timerPrev.timerNext = node.timerNext;
+        node.timerNext.timerPrev = node.timerPrev;
+        node.timerPrev = null;
+        node.timerNext = null;
+    }
+
+    // Moves the clock to now, expiring due nodes and cascading the rest to finer levels
+    @SuppressWarnings("unchecked")
+    void advance(long now) {
+        long previous = time;
+        long current = relative(now);
+        if (current <= previous) {
+            return;
+        }
+        time = current;
+        for (int level = 0; level < LEVELS; level++) {
+            long fromTick = previous >>> SHIFTS[level];
+            long toTick = current >>> SHIFTS[level];
+            if (fromTick == toTick) {
+                break; // coarser levels did not tick either
+            }
+            long last = Math.min(toTick, fromTick + BUCKETS);
+            for (long tick = fromTick + 1; tick <= last; tick++) {
+                TimerNode sentinel = wheel[level][(int) (tick & (BUCKETS - 1))];
+                // Detach the bucket first: rescheduled nodes may land back in it
+                TimerNode node = sentinel.timerNext;
+                sentinel.timerNext = sentinel;
+                sentinel.timerPrev = sentinel;
+                while (node != sentinel) {
+                    TimerNode next = node.timerNext;
+                    node.timerPrev = null;
+                    node.timerNext = null;
+                    if (relative(node.expiresAt()) <= current) {
+                        onExpired.accept((N) node);
+                    } else {
+                        schedule((N) node);
+                    }
+                    node = next;
+                }
+            }
+        }
+    }
+
+    private long relative(long absolute) {
+        if (absolute == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        long t = absolute - origin;
+        return t < 0 ? 0 : t;
+    }
+
+    private static final class Sentinel extends TimerNode {
+        @Override
+        long expiresAt() {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package lru;
+
+import java.util.*;
+
+// W-TinyLFU eviction and admission policy.
+// New keys land in a small LRU admission window. When the window overflows, its LRU key has to
+// compete with the LRU key of the main area for a place in the cache: a count-min sketch of
+// recent access frequencies decides who stays. The main area is a segmented LRU (probation +
+// protected), so a key has to be hit twice before it is protected from a scan.
+// One-hit wonders therefore only ever churn the window instead of flushing the whole cache.
+//
+// Public so lru_self can adapt it to its own EvictionPolicy interface. Not thread-safe, callers
+// serialize access the same way they do for LRUEvictionPolicy.
+public class WTinyLfuEvictionPolicy<K> implements EvictionPolicy<K> {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final class Node<K> {
+        final K key;
+        int queue;
+        Node<K> prev;
+        Node<K> next;
+
+        Node(K key, int queue) {
+            this.key = key;
+            this.queue = queue;
+        }
+    }
+
+    private final Map<K, Node<K>> index;
+    private final FrequencySketch sketch;
+    // One sentinel per queue, indexed by WINDOW / PROBATION / PROTECTED
+    private final Node<K>[] heads;
+    private final int[] sizes;
+    private final int windowMax;
+    private final int protectedMax;
+
+    public WTinyLfuEvictionPolicy(int capacity) {
+        this(capacity, 0.01);
+    }
+
+    // windowRatio is the share of capacity given to the admission window; 0 gives plain TinyLFU,
+    // where every new key has to win admission against the main victim up front.
+    @SuppressWarnings("unchecked")
+    public WTinyLfuEvictionPolicy(int capacity, double windowRatio) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        if (windowRatio < 0 || windowRatio >= 1) {
+            throw new IllegalArgumentException("Window ratio must be in [0, 1)");
+        }
+        this.windowMax = windowRatio == 0 ? 0 : Math.max(1, (int) (capacity * windowRatio));
+        this.protectedMax = (int) ((capacity - windowMax) * 0.8);
+        this.index = new HashMap<>();
+        this.sketch = new FrequencySketch(capacity);
+        this.heads = (Node<K>[]) new Node<?>[3];
+        this.sizes = new int[3];
+        for (int q = 0; q < 3; q++) {
+            Node<K> head = new Node<>(null, q);
+            head.prev = head;
+            head.next = head;
+            heads[q] = head;
+        }
+    }
+
+    @Override
+    public void keyAccessed(K key) {
+        sketch.increment(key);
+        Node<K> node = index.get(key);
+        if (node == null) {
+            node = new Node<>(key, windowMax > 0 ? WINDOW : PROBATION);
+            index.put(key, node);
+            linkFirst(node);
+            if (sizes[WINDOW] > windowMax) {
+                // Window overflow without an eviction (cache still filling up): just move on to main
+                Node<K> overflow = heads[WINDOW].prev;
+                unlink(overflow);
+                overflow.queue = PROBATION;
+                linkFirst(overflow);
+            }
+            return;
+        }
+        unlink(node);
+        if (node.queue == PROBATION) {
+            node.queue = PROTECTED; // second hit: promote
+            linkFirst(node);
+            if (sizes[PROTECTED] > protectedMax) {
+                Node<K> demoted = heads[PROTECTED].prev;
+                unlink(demoted);
+                demoted.queue = PROBATION;
+                linkFirst(demoted);
+            }
+        } else {
+            linkFirst(node);
+        }
+    }
+
+    // Called when the cache is full and needs one slot for the key that is about to be accessed.
+    // If the window is full, its LRU key is the candidate that will be pushed into main; it only
+    // gets in if it is more popular than main's victim, otherwise the candidate itself is evicted.
+    @Override
+    public K evictKey() {
+        Node<K> victim = mainVictim();
+        Node<K> candidate = sizes[WINDOW] >= windowMax ? lastOf(WINDOW) : null;
+        Node<K> evicted;
+        if (candidate == null) {
+            evicted = victim != null ? victim : lastOf(WINDOW);
+        } else if (victim == null) {
+            evicted = candidate;
+        } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+            evicted = victim;
+            unlink(candidate);
+            candidate.queue = PROBATION;
+            linkFirst(candidate);
+        } else {
+            evicted = candidate;
+        }
+        if (evicted == null) {
+            return null;
+        }
+        unlink(evicted);
+        index.remove(evicted.key);
+        return evicted.key;
+    }
+
+    @Override
+    public void keyRemoved(K key) {
+        Node<K> node = index.remove(key);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    // With an admission window every key is admitted and competes later, in evictKey.
+    // Without one (windowRatio 0) the new key competes with main's victim right here.
+    @Override
+    public boolean admit(K candidate) {
+        if (windowMax > 0) {
+            return true;
+        }
+        Node<K> victim = mainVictim();
+        if (victim == null || sketch.frequency(candidate) > sketch.frequency(victim.key)) {
+            return true;
+        }
+        sketch.increment(candidate); // remember the rejected attempt so a returning key can win later
+        return false;
+    }
+
+    // Probation first (victims come from there), then the window, then protected; LRU first in each
+    @Override
+    public List<K> keysColdestFirst() {
+        List<K> keys = new ArrayList<>(index.size());
+        for (int queue : new int[] {PROBATION, WINDOW, PROTECTED}) {
+            for (Node<K> node = heads[queue].prev; node != heads[queue]; node = node.prev) {
+                keys.add(node.key);
+            }
+        }
+        return keys;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private Node<K> mainVictim() {
+        Node<K> victim = lastOf(PROBATION);
+        return victim != null ? victim : lastOf(PROTECTED);
+    }
+
+    private Node<K> lastOf(int queue) {
+        Node<K> last = heads[queue].prev;
+        return last == heads[queue] ? null : last;
+    }
+
+    private void linkFirst(Node<K> node) {
+        Node<K> head = heads[node.queue];
+        node.prev = head;
+        node.next = head.next;
+        head.next.prev = node;
+        head.next = node;
+        sizes[node.queue]++;
+    }
+
+    private void unlink(Node<K> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        sizes[node.queue]--;
+    }
+
+    // Count-min sketch with 4-bit counters, 16 per long, 4 rows. After 10 * capacity increments
+    // every counter is halved, so old popularity fades and the sketch follows the workload.
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int size = 16;
+            while (size < capacity && size < (1 << 30)) {
+                size <<= 1;
+            }
+            this.table = new long[size];
+            this.tableMask = size - 1;
+            this.sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = 15;
+            for (int row = 0; row < 4; row++) {
+                long h = indexHash(hash, row);
+                int shift = counterShift(h);
+                frequency = Math.min(frequency, (int) ((table[(int) h & tableMask] >>> shift) & 0xfL));
+            }
+            return frequency;
+        }
+
+        // Returns whether this addition aged the counters
+        boolean increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                long h = indexHash(hash, row);
+                int i = (int) h & tableMask;
+                int shift = counterShift(h);
+                if (((table[i] >>> shift) & 0xfL) < 15) {
+                    table[i] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+                return true;
+            }
+            return false;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions >>>= 1;
+        }
+
+        private static long indexHash(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return h ^ (h >>> 32);
+        }
+
+        private static int counterShift(long h) {
+            return (int) ((h >>> 40) & 15) << 2;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
+
+// Hit rate of LRU vs W-TinyLFU on a skewed workload that is interrupted by large one-off scans.
+// Run: java lru.WTinyLfuDriver
+class WTinyLfuDriver {
+    public static void main(String[] args) {
+        int capacity = 1_000;
+        System.out.printf("LRU        hit rate: %.1f%%%n", 100 * hitRate(new ConcurrentCache<>(capacity, new LinkedLRUEvictionPolicy<>())));
+        System.out.printf("W-TinyLFU  hit rate: %.1f%%%n", 100 * hitRate(new ConcurrentCache<>(capacity, new WTinyLfuEvictionPolicy<>(capacity))));
+    }
+
+    static double hitRate(Cache<Integer, Integer> cache) {
+        Random random = new Random(7);
+        int scanKey = 1_000_000;
+        int hits = 0;
+        int requests = 0;
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 2_000; i++) {
+                // Skewed popularity over 5k keys: low ids are requested far more often
+                int key = (int) (5_000 * Math.pow(random.nextDouble(), 3));
+                requests++;
+                if (cache.get(key) != null) {
+                    hits++;
+                } else {
+                    cache.put(key, key);
+                }
+            }
+            for (int i = 0; i < 1_500; i++) {
+                int key = scanKey++; // one-hit wonders
+                requests++;
+                if (cache.get(key) != null) {
+                    hits++;
+                } else {
+                    cache.put(key, key);
+                }
+            }
+        }
+        return (double) hits / requests;
+    }
+}
@@ -0,0 +1,7 @@
+package lru;
+
+// Weighs an entry, e.g. its size in bytes, for caches bounded by total weight instead of entry count.
+// Must return the same non-negative weight for the same key and value every time.
+interface Weigher<K, V> {
+    int weigh(K key, V value);
+}
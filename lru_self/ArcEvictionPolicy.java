@@ -0,0 +1,211 @@
+package lru_self;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+// Adaptive Replacement Cache (Megiddo & Modha). Resident keys are split into T1 (seen once
+// recently) and T2 (seen at least twice); B1 and B2 remember the keys recently evicted from each
+// (ghosts, keys only). A miss on a B1 ghost means T1 was too small, one on a B2 ghost that T2
+// was, and the target size p of T1 moves accordingly. So the policy tunes itself between
+// recency and frequency as the workload changes phase, and a loop or scan larger than the cache
+// only passes through T1.
+// capacity must be the cap of the LruCache it is used with, ARC sizes its ghost lists from it.
+// evictKey needs to know the key that is coming in; LruCache asks admit right before evicting
+// for a new key, so admit remembers it and always says yes.
+class ArcEvictionPolicy<K,V> implements EvictionPolicy<K,V>{
+    int capacity;
+    double p;                       // target size of T1
+    LinkedHashSet<K> t1, t2, b1, b2;    // oldest first
+    K incoming;                     // key passed to admit, whose miss triggered the eviction
+    K adapted;                      // ghost key p was already adapted for
+
+    ArcEvictionPolicy(int capacity){
+        if(capacity <= 0){
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.capacity = capacity;
+        this.t1 = new LinkedHashSet<>();
+        this.t2 = new LinkedHashSet<>();
+        this.b1 = new LinkedHashSet<>();
+        this.b2 = new LinkedHashSet<>();
+    }
+
+    @Override
+    public void accessed(K key) {
+        if(t1.remove(key) || t2.remove(key)){
+            t2.add(key); // hit: now seen at least twice
+            return;
+        }
+        boolean inB1 = b1.remove(key);
+        boolean inB2 = !inB1 && b2.remove(key);
+        if((inB1 || inB2) && !key.equals(adapted)){
+            adapt(inB1);
+        }
+        incoming = null;
+        adapted = null;
+        if(inB1 || inB2){
+            t2.add(key); // ghost hit: it would have been a second access
+            return;
+        }
+        t1.add(key);
+        // Keep the directory at most 2 * capacity keys, with T1 + B1 at most capacity
+        while(t1.size() + b1.size() > capacity && !b1.isEmpty()){
+            removeOldest(b1);
+        }
+        while(t1.size() + t2.size() + b1.size() + b2.size() > 2 * capacity && !b2.isEmpty()){
+            removeOldest(b2);
+        }
+    }
+
+    // ARC's REPLACE: evicts from T1 while it is over its target, otherwise from T2. The evicted
+    // key becomes a ghost in B1 or B2.
+    @Override
+    public K evictKey() {
+        boolean incomingInB2 = incoming != null && b2.contains(incoming);
+        boolean fromT1 = !t1.isEmpty() && (t1.size() > p || (incomingInB2 && t1.size() == (int) p) || t2.isEmpty());
+        if(fromT1){
+            K key = removeOldest(t1);
+            b1.add(key);
+            return key;
+        }
+        if(!t2.isEmpty()){
+            K key = removeOldest(t2);
+            b2.add(key);
+            return key;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean admit(K candidate){
+        incoming = candidate;
+        boolean inB1 = b1.contains(candidate);
+        if(inB1 || b2.contains(candidate)){
+            adapt(inB1); // before REPLACE, as in the paper
+            adapted = candidate;
+        }
+        return true;
+    }
+
+    public double target(){
+        return p;
+    }
+
+    void adapt(boolean ghostOfT1){
+        if(ghostOfT1){
+            p = Math.min(capacity, p + Math.max(1.0, (double) b2.size() / b1.size()));
+        }
+        else{
+            p = Math.max(0, p - Math.max(1.0, (double) b1.size() / b2.size()));
+        }
+    }
+
+    static <K> K removeOldest(LinkedHashSet<K> list){
+        Iterator<K> oldest = list.iterator();
+        K key = oldest.next();
+        oldest.remove();
+        return key;
+    }
+}
+
+// Hit rate of LRU vs ARC through LruCache on synthetic workloads, and on a trace file if given
+// (one key per line). Run: java lru_self.ArcDriver [trace-file]
+class ArcDriver{
+
+    public static void main(String[] args) throws IOException {
+        int capacity = 1_000;
+        Map<String, long[]> workloads = new LinkedHashMap<>();
+        workloads.put("zipf 0.9 over 20k keys", zipf(20_000, 0.9, 200_000, 1));
+        workloads.put("loop over 1.2x capacity", loop((int) (capacity * 1.2), 200_000));
+        workloads.put("frequent set + scans", frequentWithScans(capacity, 200_000));
+        workloads.put("recency / frequency phases", phases(capacity, 200_000));
+        if(args.length > 0){
+            workloads.put("trace " + args[0], trace(Paths.get(args[0])));
+        }
+        System.out.printf("%-28s %8s %8s%n", "workload (cache " + capacity + ")", "LRU", "ARC");
+        for(Map.Entry<String, long[]> workload : workloads.entrySet()){
+            double lru = hitRate(new LRUEvictionPolicy<Long, Long>(), capacity, workload.getValue());
+            double arc = hitRate(new ArcEvictionPolicy<Long, Long>(capacity), capacity, workload.getValue());
+            System.out.printf("%-28s %7.1f%% %7.1f%%%n", workload.getKey(), 100 * lru, 100 * arc);
+        }
+    }
+
+    static double hitRate(EvictionPolicy<Long, Long> policy, int capacity, long[] keys){
+        LruCache<Long, Long> cache = new LruCache<>(new MapStorage<Long, Long>(capacity), policy, capacity);
+        long hits = 0;
+        for(long key : keys){
+            if(cache.get(key) != null){
+                hits++;
+            }
+            else{
+                cache.put(key, key);
+            }
+        }
+        return (double) hits / keys.length;
+    }
+
+    static long[] zipf(int keys, double skew, int length, long seed){
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for(int i = 0; i < keys; i++){
+            sum += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(seed);
+        long[] trace = new long[length];
+        for(int i = 0; i < length; i++){
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = rank >= 0 ? rank : -rank - 1;
+        }
+        return trace;
+    }
+
+    // ARC resists scans, not loops: a loop just over capacity keeps T1 full and B1 empty, so
+    // like LRU it never hits
+    static long[] loop(int keys, int length){
+        long[] trace = new long[length];
+        for(int i = 0; i < length; i++){
+            trace[i] = i % keys;
+        }
+        return trace;
+    }
+
+    // Half the cache worth of hot keys, interrupted by long runs of keys never seen again
+    static long[] frequentWithScans(int capacity, int length){
+        Random random = new Random(2);
+        long[] trace = new long[length];
+        long scanKey = 1_000_000;
+        for(int i = 0; i < length; i++){
+            boolean scanning = (i / 2_000) % 2 == 1;
+            trace[i] = scanning ? scanKey++ : random.nextInt(capacity / 2);
+        }
+        return trace;
+    }
+
+    // Alternates a sliding recency window with a skewed frequency phase over other keys
+    static long[] phases(int capacity, int length){
+        long[] frequent = zipf(capacity * 4, 1.0, length, 3);
+        long[] trace = new long[length];
+        for(int i = 0; i < length; i++){
+            boolean recency = (i / 20_000) % 2 == 0;
+            trace[i] = recency ? 10_000_000 + i / 4 - new Random(i).nextInt(capacity / 2) : frequent[i];
+        }
+        return trace;
+    }
+
+    static long[] trace(Path file) throws IOException{
+        List<String> lines = Files.readAllLines(file);
+        long[] trace = new long[lines.size()];
+        for(int i = 0; i < trace.length; i++){
+            String line = lines.get(i).trim();
+            try{
+                trace[i] = Long.parseLong(line);
+            }
+            catch(NumberFormatException e){
+                trace[i] = line.hashCode();
+            }
+        }
+        return trace;
+    }
+}
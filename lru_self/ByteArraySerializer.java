@@ -0,0 +1,17 @@
+package lru_self;
+
+import java.nio.ByteBuffer;
+
+class ByteArraySerializer implements Serializer<byte[]>{
+    public int sizeOf(byte[] value){
+        return value.length;
+    }
+    public void write(byte[] value, ByteBuffer out){
+        out.put(value);
+    }
+    public byte[] read(ByteBuffer in){
+        byte[] value = new byte[in.remaining()];
+        in.get(value);
+        return value;
+    }
+}
@@ -0,0 +1,57 @@
+package lru_self;
+
+import java.util.*;
+import simulator.CachePolicy;
+
+// Adapts this package's eviction policies to the simulator, driving them the way LruCache does
+// but over a plain set of resident keys, so no values are stored.
+public final class CachePolicies{
+    private CachePolicies(){
+    }
+
+    public static CachePolicy lru(int capacity){
+        return new Adapter(capacity, new LRUEvictionPolicy<Long, Long>());
+    }
+
+    public static CachePolicy arc(int capacity){
+        return new Adapter(capacity, new ArcEvictionPolicy<Long, Long>(capacity));
+    }
+
+    // The primitive LongLruCache, which is both storage and policy
+    public static CachePolicy longLru(int capacity){
+        LongLruCache cache = new LongLruCache(capacity);
+        return key -> {
+            if(cache.get(key, -1) != -1) return true;
+            cache.put(key, 0);
+            return false;
+        };
+    }
+
+    static class Adapter implements CachePolicy{
+        int capacity;
+        EvictionPolicy<Long, Long> policy;
+        Set<Long> resident;
+
+        Adapter(int capacity, EvictionPolicy<Long, Long> policy){
+            this.capacity = capacity;
+            this.policy = policy;
+            this.resident = new HashSet<>();
+        }
+
+        public boolean access(long key){
+            Long boxed = key;
+            if(resident.contains(boxed)){
+                policy.accessed(boxed);
+                return true;
+            }
+            if(resident.size() >= capacity){
+                if(!policy.admit(boxed)) return false;
+                Long evicted = policy.evictKey();
+                if(evicted != null) resident.remove(evicted);
+            }
+            resident.add(boxed);
+            policy.accessed(boxed);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package lru_self;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Backing store that LruCache writes through to. write must be durable when it returns.
+interface CacheWriter<K,V>{
+    public void write(K key, V value);
+
+    // Writes a batch; stores with a bulk path override it so a batch costs one round trip
+    default public void writeAll(Map<K,V> entries){
+        for(Map.Entry<K,V> entry : entries.entrySet()){
+            write(entry.getKey(), entry.getValue());
+        }
+    }
+}
+
+// Write-behind in front of another writer. Writes only mark the key dirty in memory, so a key
+// written many times between two flushes reaches the store once, with its latest value.
+// The dirty entries are flushed as one writeAll batch when maxBatch keys are dirty or
+// flushInterval has passed, whichever comes first, on a single daemon thread, never on the
+// caller's. A failed flush keeps the entries dirty for the next one, unless they were written
+// again meanwhile; it is logged. At most maxDirty keys wait: while the store keeps failing,
+// writes of further keys throw instead of piling up in memory.
+// Entries not yet flushed are lost if the process dies, call close() on shutdown.
+class WriteBehindWriter<K,V> implements CacheWriter<K,V>, Closeable{
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindWriter.class.getName());
+
+    CacheWriter<K,V> store;
+    int maxBatch;
+    int maxDirty;
+    Map<K,V> dirty;
+    ScheduledExecutorService flusher;
+    boolean flushQueued;    // a size triggered flush is pending, guarded by this
+
+    // Up to 16 batches may wait
+    WriteBehindWriter(CacheWriter<K,V> store, int maxBatch, long flushInterval, TimeUnit unit){
+        this(store, maxBatch, (int) Math.min(Integer.MAX_VALUE, 16L * maxBatch), flushInterval, unit);
+    }
+
+    WriteBehindWriter(CacheWriter<K,V> store, int maxBatch, int maxDirty, long flushInterval, TimeUnit unit){
+        if(maxBatch <= 0 || flushInterval <= 0){
+            throw new IllegalArgumentException("Batch size and flush interval must be greater than zero");
+        }
+        if(maxDirty < maxBatch){
+            throw new IllegalArgumentException("maxDirty must be at least the batch size");
+        }
+        this.store = store;
+        this.maxBatch = maxBatch;
+        this.maxDirty = maxDirty;
+        this.dirty = new LinkedHashMap<>();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, unit);
+    }
+
+    // Throws IllegalStateException if key is not dirty yet and maxDirty keys already are
+    public void write(K key, V value){
+        synchronized(this){
+            if(dirty.size() >= maxDirty && !dirty.containsKey(key)){
+                throw new IllegalStateException(dirty.size() + " writes are waiting for the store, flushes keep failing");
+            }
+            dirty.remove(key); // re-insert, so the batch stays in order of the last write
+            dirty.put(key, value);
+            if(dirty.size() < maxBatch || flushQueued){
+                return;
+            }
+            flushQueued = true;
+        }
+        flusher.execute(this::flushQuietly);
+    }
+
+    public synchronized int dirtyCount(){
+        return dirty.size();
+    }
+
+    // Writes all dirty entries now, in the caller's thread
+    public void flush(){
+        synchronized(store){ // one flush at a time, so batches reach the store in order
+            Map<K,V> batch;
+            synchronized(this){
+                flushQueued = false;
+                if(dirty.isEmpty()) return;
+                batch = dirty;
+                dirty = new LinkedHashMap<>();
+            }
+            try{
+                store.writeAll(batch);
+            }
+            catch(RuntimeException e){
+                synchronized(this){
+                    for(Map.Entry<K,V> entry : batch.entrySet()){
+                        dirty.putIfAbsent(entry.getKey(), entry.getValue());
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    // Flushes what is left and stops the flush thread
+    public void close(){
+        flusher.shutdown();
+        try{
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    void flushQuietly(){
+        try{
+            flush();
+        }
+        catch(RuntimeException e){
+            LOGGER.log(Level.WARNING, "Write-behind flush failed, " + dirtyCount() + " entries wait for a retry", e);
+        }
+    }
+}
+
+// Local file store: an append-only log of (key length, value length, key, value) records with an
+// in-memory index of the latest record per key, rebuilt by scanning the log on open.
+// Every write or writeAll is one append and one fsync, so a batch costs a single write IO.
+// Records of keys written again are garbage; once there are more than compactAfterBytes of it,
+// and more of it than of live records, the live ones are copied to a new file that replaces the log,
+// so the file and the scan on open stay proportional to the live keys.
+class FileStore<K,V> implements CacheWriter<K,V>, Closeable{
+    private static final Logger LOGGER = Logger.getLogger(FileStore.class.getName());
+    static final int HEADER = 8;
+
+    static final class Record{
+        final long offset;
+        final int length;   // header included
+
+        Record(long offset, int length){
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    Path file;
+    FileChannel channel;
+    Serializer<K> keySerializer;
+    Serializer<V> valueSerializer;
+    Map<K,Record> index;    // key -> its latest record
+    long end;
+    long liveBytes;         // bytes of the records in index
+    long compactAfterBytes;
+    long writeOps;
+    long compactions;
+
+    FileStore(Path file, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException{
+        this(file, keySerializer, valueSerializer, 1 << 20);
+    }
+
+    FileStore(Path file, Serializer<K> keySerializer, Serializer<V> valueSerializer, long compactAfterBytes) throws IOException{
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.compactAfterBytes = compactAfterBytes;
+        this.index = new HashMap<>();
+        recover();
+        compactIfWorthIt();
+    }
+
+    public void write(K key, V value){
+        writeAll(Collections.singletonMap(key, value));
+    }
+
+    public synchronized void writeAll(Map<K,V> entries){
+        if(entries.isEmpty()) return;
+        int size = 0;
+        for(Map.Entry<K,V> entry : entries.entrySet()){
+            size += HEADER + keySerializer.sizeOf(entry.getKey()) + valueSerializer.sizeOf(entry.getValue());
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        Map<K,Record> records = new HashMap<>();
+        for(Map.Entry<K,V> entry : entries.entrySet()){
+            int start = out.position();
+            out.putInt(keySerializer.sizeOf(entry.getKey()));
+            out.putInt(valueSerializer.sizeOf(entry.getValue()));
+            keySerializer.write(entry.getKey(), out);
+            valueSerializer.write(entry.getValue(), out);
+            records.put(entry.getKey(), new Record(end + start, out.position() - start));
+        }
+        out.flip();
+        try{
+            long position = end;
+            while(out.hasRemaining()){
+                position += channel.write(out, position);
+            }
+            channel.force(false);
+        }
+        catch(IOException e){
+            throw new UncheckedIOException("Could not write " + entries.size() + " entries", e);
+        }
+        end += size;
+        for(Map.Entry<K,Record> entry : records.entrySet()){ // only once the batch is on disk
+            track(entry.getKey(), entry.getValue());
+        }
+        writeOps++;
+        compactIfWorthIt();
+    }
+
+    public synchronized V read(K key){
+        Record record = index.get(key);
+        if(record == null) return null;
+        try{
+            ByteBuffer header = readFully(record.offset, HEADER);
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            return valueSerializer.read(readFully(record.offset + HEADER + keyLength, valueLength));
+        }
+        catch(IOException e){
+            throw new UncheckedIOException("Could not read key " + key, e);
+        }
+    }
+
+    // Number of write IOs (appends followed by an fsync) issued so far
+    public synchronized long writeOps(){
+        return writeOps;
+    }
+
+    public synchronized int size(){
+        return index.size();
+    }
+
+    // Bytes of the log file, garbage included
+    public synchronized long fileBytes(){
+        return end;
+    }
+
+    public synchronized long compactions(){
+        return compactions;
+    }
+
+    public synchronized void close() throws IOException{
+        channel.close();
+    }
+
+    // Indexes every complete record and cuts off a torn one left by a crash mid-append
+    void recover() throws IOException{
+        long size = channel.size();
+        long offset = 0;
+        while(offset + HEADER <= size){
+            ByteBuffer header = readFully(offset, HEADER);
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            if(keyLength < 0 || valueLength < 0 || offset + HEADER + keyLength + valueLength > size) break;
+            int length = HEADER + keyLength + valueLength;
+            track(keySerializer.read(readFully(offset + HEADER, keyLength)), new Record(offset, length));
+            offset += length;
+        }
+        channel.truncate(offset);
+        end = offset;
+    }
+
+    void track(K key, Record record){
+        Record old = index.put(key, record);
+        if(old != null){
+            liveBytes -= old.length;
+        }
+        liveBytes += record.length;
+    }
+
+    void compactIfWorthIt(){
+        long garbage = end - liveBytes;
+        if(garbage <= compactAfterBytes || garbage <= liveBytes) return;
+        try{
+            compact();
+        }
+        catch(IOException e){
+            LOGGER.log(Level.WARNING, "Compaction of " + file + " failed, keeping the old log", e);
+        }
+    }
+
+    // Copies the live records to a new file, then moves it over the log. A crash before the move
+    // leaves the old log, which is still complete.
+    void compact() throws IOException{
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        Map<K,Record> moved = new HashMap<>();
+        long position = 0;
+        try(FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            for(Map.Entry<K,Record> entry : index.entrySet()){
+                Record record = entry.getValue();
+                ByteBuffer bytes = readFully(record.offset, record.length);
+                moved.put(entry.getKey(), new Record(position, record.length));
+                while(bytes.hasRemaining()){
+                    position += out.write(bytes, position);
+                }
+            }
+            out.force(false);
+        }
+        catch(IOException e){
+            Files.deleteIfExists(compacted);
+            throw e;
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel old = channel;
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        old.close();
+        index = moved;
+        end = position;
+        liveBytes = position;
+        compactions++;
+    }
+
+    ByteBuffer readFully(long position, int length) throws IOException{
+        ByteBuffer in = ByteBuffer.allocate(length);
+        while(in.hasRemaining()){
+            if(channel.read(in, position + in.position()) < 0){
+                throw new IOException("Unexpected end of file at " + (position + in.position()));
+            }
+        }
+        in.flip();
+        return in;
+    }
+}
+
+class CacheWriterDriver{
+
+    public static void main(String[] args) throws IOException {
+        // 20k writes on 100 hot keys, written through vs written behind
+        for(boolean behind : new boolean[]{false, true}){
+            Path file = Files.createTempFile("cache-store", ".log");
+            FileStore<String, String> store = new FileStore<>(file, new StringSerializer(), new StringSerializer(), 64 * 1024);
+            CacheWriter<String, String> writer = behind ? new WriteBehindWriter<>(store, 1_000, 100, TimeUnit.MILLISECONDS) : store;
+            LruCache<String, String> cache = new LruCache<>(new MapStorage<String, String>(0),
+                    new LRUEvictionPolicy<String, String>(), 50, writer);
+            long start = System.nanoTime();
+            for(int i = 0; i < 20_000; i++){
+                cache.put("key" + (i % 100), "value" + i);
+            }
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            if(behind){
+                ((WriteBehindWriter<String, String>) writer).close();
+            }
+            System.out.println((behind ? "write-behind " : "write-through") + ": " + store.writeOps() + " store writes, "
+                    + elapsed + " ms, key7 on disk = " + store.read("key7") + ", log " + store.fileBytes()
+                    + " bytes after " + store.compactions() + " compactions");
+            store.close();
+            FileStore<String, String> reopened = new FileStore<>(file, new StringSerializer(), new StringSerializer());
+            System.out.println("  reopened store has " + reopened.size() + " keys, key99 = " + reopened.read("key99"));
+            reopened.close();
+            Files.delete(file);
+        }
+
+        // A store that is down: dirty stops growing at maxDirty, and further keys are refused
+        CacheWriter<String, String> down = (key, value) -> { throw new UncheckedIOException(new IOException("store down")); };
+        Logger.getLogger(WriteBehindWriter.class.getName()).setLevel(Level.OFF);
+        WriteBehindWriter<String, String> behind = new WriteBehindWriter<>(down, 10, 50, 10, TimeUnit.MILLISECONDS);
+        int refused = 0;
+        for(int i = 0; i < 1_000; i++){
+            try{
+                behind.write("key" + i, "value" + i);
+            }
+            catch(IllegalStateException e){
+                refused++;
+            }
+        }
+        behind.write("key0", "rewritten"); // already dirty, still accepted
+        System.out.println("Store down: " + behind.dirtyCount() + " entries dirty, " + refused + " writes refused");
+        try{
+            behind.close();
+        }
+        catch(RuntimeException e){
+            System.out.println("close: " + e.getMessage());
+        }
+    }
+}
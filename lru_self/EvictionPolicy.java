@@ -0,0 +1,19 @@
+package lru_self;
+
+import java.util.function.Predicate;
+
+interface EvictionPolicy<K, V>{
+    public void accessed(K key);
+    public K evictKey();
+
+    // Evicts the coldest key that eligible accepts, null if there is none. Policies that cannot
+    // search their order evict their usual victim.
+    default public K evictKey(Predicate<K> eligible){
+        return evictKey();
+    }
+
+    // Admission hook, asked before a new key is put into a full cache. Returning false rejects it.
+    default public boolean admit(K candidate){
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+package lru_self;
+
+// LRU cache specialised for int keys, values are plain object references.
+// Same layout as LongLruCache: parallel arrays per entry slot, int prev/next links for the LRU
+// list and an open-addressing table of slot + 1. Keys are never boxed, so get and put do not
+// allocate.
+public class IntLruCache<V> {
+    static final int NONE = -1;
+
+    int[] keys;
+    Object[] values;
+    int[] prev;
+    int[] next;
+    int[] table;        // slot + 1 of the entry hashed here, 0 for empty
+    int tableMask;
+    int head = NONE;    // most recently used slot
+    int tail = NONE;    // least recently used slot
+    int size;
+    int freeSlot = NONE; // removed slots, chained through next[]
+    int cap;
+
+    IntLruCache(int cap){
+        if(cap <= 0){
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.cap = cap;
+        keys = new int[cap];
+        values = new Object[cap];
+        prev = new int[cap];
+        next = new int[cap];
+        int tableSize = Integer.highestOneBit(Math.max(2, cap * 2 - 1)) << 1; // load factor <= 0.5
+        table = new int[tableSize];
+        tableMask = tableSize - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized V get(int key){
+        int slot = find(key);
+        if(slot == NONE) return null;
+        moveToHead(slot);
+        return (V) values[slot];
+    }
+
+    public synchronized boolean containsKey(int key){
+        return find(key) != NONE;
+    }
+
+    public synchronized void put(int key, V value){
+        int slot = find(key);
+        if(slot != NONE){
+            values[slot] = value;
+            moveToHead(slot);
+            return;
+        }
+        if(size == cap){
+            slot = tail; // reuse the evicted entry's slot
+            unlink(slot);
+            deleteFromTable(keys[slot]);
+            size--;
+        }
+        else if(freeSlot != NONE){
+            slot = freeSlot;
+            freeSlot = next[slot];
+        }
+        else{
+            slot = size;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        insertIntoTable(key, slot);
+        linkHead(slot);
+        size++;
+    }
+
+    public synchronized boolean remove(int key){
+        int slot = deleteFromTable(key);
+        if(slot == NONE) return false;
+        unlink(slot);
+        values[slot] = null; // let the value be collected
+        next[slot] = freeSlot;
+        freeSlot = slot;
+        size--;
+        return true;
+    }
+
+    public synchronized int size(){
+        return size;
+    }
+
+    int find(int key){
+        for(int i = hash(key) & tableMask; ; i = (i + 1) & tableMask){
+            int entry = table[i];
+            if(entry == 0) return NONE;
+            if(keys[entry - 1] == key) return entry - 1;
+        }
+    }
+
+    void insertIntoTable(int key, int slot){
+        int i = hash(key) & tableMask;
+        while(table[i] != 0){
+            i = (i + 1) & tableMask;
+        }
+        table[i] = slot + 1;
+    }
+
+    // Backward-shift delete, see LongLruCache.deleteFromTable
+    int deleteFromTable(int key){
+        int i = hash(key) & tableMask;
+        while(true){
+            int entry = table[i];
+            if(entry == 0) return NONE;
+            if(keys[entry - 1] == key) break;
+            i = (i + 1) & tableMask;
+        }
+        int slot = table[i] - 1;
+        int gap = i;
+        for(int j = (gap + 1) & tableMask; table[j] != 0; j = (j + 1) & tableMask){
+            int home = hash(keys[table[j] - 1]) & tableMask;
+            if(((j - home) & tableMask) >= ((j - gap) & tableMask)){
+                table[gap] = table[j];
+                gap = j;
+            }
+        }
+        table[gap] = 0;
+        return slot;
+    }
+
+    void moveToHead(int slot){
+        if(slot == head) return;
+        unlink(slot);
+        linkHead(slot);
+    }
+
+    void linkHead(int slot){
+        prev[slot] = NONE;
+        next[slot] = head;
+        if(head != NONE) prev[head] = slot;
+        head = slot;
+        if(tail == NONE) tail = slot;
+    }
+
+    void unlink(int slot){
+        int p = prev[slot];
+        int n = next[slot];
+        if(p != NONE) next[p] = n; else head = n;
+        if(n != NONE) prev[n] = p; else tail = p;
+    }
+
+    static int hash(int key){
+        int h = key * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
+
+class IntLruCacheDriver{
+
+    public static void main(String[] args) {
+        IntLruCache<String> cache = new IntLruCache<>(3);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(3, "three");
+        System.out.println(cache.get(1));  // one
+        cache.put(4, "four");              // evicts 2
+        System.out.println(cache.get(2));  // null
+        System.out.println(cache.get(3) + " " + cache.get(4));
+    }
+}
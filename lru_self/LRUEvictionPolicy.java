@@ -0,0 +1,50 @@
+package lru_self;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+class LRUEvictionPolicy<K,V> implements EvictionPolicy<K,V>{
+
+    LinkedHashMap<K,V> linkedHashMap;
+
+    LRUEvictionPolicy(){
+        linkedHashMap = new LinkedHashMap<>();
+    }
+    @Override
+    public void accessed(K key) {
+        if(linkedHashMap.containsKey(key)){
+            V v = linkedHashMap.get(key);
+            linkedHashMap.remove(key);
+            linkedHashMap.put(key, v);
+        }
+        else{
+            linkedHashMap.put(key, null);
+        }
+    }
+
+    @Override
+    public K evictKey() {
+        if(linkedHashMap.size() == 0){
+            return  null;
+        }
+        else{
+            K k =  linkedHashMap.keySet().iterator().next();
+            linkedHashMap.remove(k);
+            return k;
+        }
+    }
+
+    @Override
+    public K evictKey(Predicate<K> eligible) {
+        Iterator<K> keys = linkedHashMap.keySet().iterator();
+        while(keys.hasNext()){
+            K k = keys.next();
+            if(eligible.test(k)){
+                keys.remove();
+                return k;
+            }
+        }
+        return null;
+    }
+    
+}
@@ -0,0 +1,183 @@
+package lru_self;
+
+// LRU cache specialised for long keys and long values, no boxing anywhere.
+// Entries live in parallel arrays indexed by an entry slot; the LRU list is kept as int prev/next
+// slot links and the key lookup is an open-addressing table (linear probing, backward-shift
+// delete) of slot + 1. Everything is allocated up front, so get and put never allocate.
+// About 36 bytes per entry against well over 100 for LruCache<Long,Long> with MapStorage.
+public class LongLruCache {
+    static final int NONE = -1;
+
+    long[] keys;
+    long[] values;
+    int[] prev;
+    int[] next;
+    int[] table;        // slot + 1 of the entry hashed here, 0 for empty
+    int tableMask;
+    int head = NONE;    // most recently used slot
+    int tail = NONE;    // least recently used slot
+    int size;
+    int freeSlot = NONE; // removed slots, chained through next[]
+    int cap;
+
+    LongLruCache(int cap){
+        if(cap <= 0){
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.cap = cap;
+        keys = new long[cap];
+        values = new long[cap];
+        prev = new int[cap];
+        next = new int[cap];
+        int tableSize = Integer.highestOneBit(Math.max(2, cap * 2 - 1)) << 1; // load factor <= 0.5
+        table = new int[tableSize];
+        tableMask = tableSize - 1;
+    }
+
+    public synchronized long get(long key, long defaultValue){
+        int slot = find(key);
+        if(slot == NONE) return defaultValue;
+        moveToHead(slot);
+        return values[slot];
+    }
+
+    public synchronized boolean containsKey(long key){
+        return find(key) != NONE;
+    }
+
+    public synchronized void put(long key, long value){
+        int slot = find(key);
+        if(slot != NONE){
+            values[slot] = value;
+            moveToHead(slot);
+            return;
+        }
+        if(size == cap){
+            slot = tail; // reuse the evicted entry's slot
+            unlink(slot);
+            deleteFromTable(keys[slot]);
+            size--;
+        }
+        else if(freeSlot != NONE){
+            slot = freeSlot;
+            freeSlot = next[slot];
+        }
+        else{
+            slot = size;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        insertIntoTable(key, slot);
+        linkHead(slot);
+        size++;
+    }
+
+    public synchronized boolean remove(long key){
+        int slot = deleteFromTable(key);
+        if(slot == NONE) return false;
+        unlink(slot);
+        next[slot] = freeSlot;
+        freeSlot = slot;
+        size--;
+        return true;
+    }
+
+    public synchronized int size(){
+        return size;
+    }
+
+    int find(long key){
+        for(int i = hash(key) & tableMask; ; i = (i + 1) & tableMask){
+            int entry = table[i];
+            if(entry == 0) return NONE;
+            if(keys[entry - 1] == key) return entry - 1;
+        }
+    }
+
+    void insertIntoTable(long key, int slot){
+        int i = hash(key) & tableMask;
+        while(table[i] != 0){
+            i = (i + 1) & tableMask;
+        }
+        table[i] = slot + 1;
+    }
+
+    // Removes key from the table and returns its slot. Later entries of the probe run are shifted
+    // back instead of leaving a tombstone, so lookups never slow down after many evictions.
+    int deleteFromTable(long key){
+        int i = hash(key) & tableMask;
+        while(true){
+            int entry = table[i];
+            if(entry == 0) return NONE;
+            if(keys[entry - 1] == key) break;
+            i = (i + 1) & tableMask;
+        }
+        int slot = table[i] - 1;
+        int gap = i;
+        for(int j = (gap + 1) & tableMask; table[j] != 0; j = (j + 1) & tableMask){
+            int home = hash(keys[table[j] - 1]) & tableMask;
+            // move j into the gap unless its home lies cyclically in (gap, j]
+            if(((j - home) & tableMask) >= ((j - gap) & tableMask)){
+                table[gap] = table[j];
+                gap = j;
+            }
+        }
+        table[gap] = 0;
+        return slot;
+    }
+
+    void moveToHead(int slot){
+        if(slot == head) return;
+        unlink(slot);
+        linkHead(slot);
+    }
+
+    void linkHead(int slot){
+        prev[slot] = NONE;
+        next[slot] = head;
+        if(head != NONE) prev[head] = slot;
+        head = slot;
+        if(tail == NONE) tail = slot;
+    }
+
+    void unlink(int slot){
+        int p = prev[slot];
+        int n = next[slot];
+        if(p != NONE) next[p] = n; else head = n;
+        if(n != NONE) prev[n] = p; else tail = p;
+    }
+
+    static int hash(long key){
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
+
+class LongLruCacheDriver{
+
+    public static void main(String[] args) {
+        LongLruCache cache = new LongLruCache(3);
+        cache.put(1L, 100L);
+        cache.put(2L, 200L);
+        cache.put(3L, 300L);
+        System.out.println(cache.get(1L, -1));  // 100, 1 is now most recent
+        cache.put(4L, 400L);                    // evicts 2
+        System.out.println(cache.get(2L, -1));  // -1
+        cache.remove(3L);
+        cache.put(5L, 500L);                    // fills the removed slot, nothing evicted
+        System.out.println(cache.get(1L, -1) + " " + cache.get(4L, -1) + " " + cache.get(5L, -1));
+
+        // Allocation check: a warmed-up loop of hits and evicting puts should not allocate
+        LongLruCache big = new LongLruCache(100_000);
+        for(long i = 0; i < 200_000; i++) big.put(i, i);
+        Runtime runtime = Runtime.getRuntime();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        long sum = 0;
+        for(long i = 0; i < 1_000_000; i++){
+            big.put(200_000 + i, i);
+            sum += big.get(150_000 + (i % 50_000), 0);
+        }
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        System.out.println("Heap growth over 2M ops: " + Math.max(0, after - before) + " bytes (checksum " + sum + ")");
+    }
+}
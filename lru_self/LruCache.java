@@ -1,12 +1,18 @@
 package lru_self;
 
-import java.util.*;
+import java.util.function.Predicate;
+import lru.CacheStats;
+import lru.RemovalCause;
+import lru.StatsCounter;
 
 public class LruCache<K,V> {
 
     Storage<K,V> storage;
     EvictionPolicy<K,V> evictionPolicy;
     int cap;
+    StatsCounter statsCounter; // null = statistics off
+    CacheWriter<K,V> writer;   // null = cache only
+    EvictionListener<K,V> evictionListener; // null = evicted entries are dropped
     
 
     LruCache(Storage<K,V> storage, EvictionPolicy<K,V> evictionPolicy, int cap){
@@ -15,126 +21,94 @@ public class LruCache<K,V> {
         this.cap = cap;
     }
 
+    // Every put is written to writer first: synchronously for a store (write-through), or
+    // coalesced and flushed in batches when writer is a WriteBehindWriter (write-behind)
+    LruCache(Storage<K,V> storage, EvictionPolicy<K,V> evictionPolicy, int cap, CacheWriter<K,V> writer){
+        this(storage, evictionPolicy, cap);
+        this.writer = writer;
+    }
+
+    // Weight bounded mode: the storage is wrapped so it only has room while the total weight fits
+    LruCache(Storage<K,V> storage, EvictionPolicy<K,V> evictionPolicy, long maxWeight, Weigher<K,V> weigher){
+        this(new WeightedStorage<>(storage, weigher, maxWeight), evictionPolicy, Integer.MAX_VALUE);
+    }
+
+    // Records hits, misses and removals into counter; null turns statistics off
+    public synchronized void setStatsCounter(StatsCounter counter){
+        this.statsCounter = counter;
+    }
+
+    // Called with every entry that leaves the cache to make room, and with new entries the policy
+    // rejects, while the cache lock is held
+    public synchronized void setEvictionListener(EvictionListener<K,V> listener){
+        this.evictionListener = listener;
+    }
+
+    // Snapshot of the statistics so far; all zero while statistics are off
+    public synchronized CacheStats stats(){
+        return (statsCounter != null ? statsCounter : new StatsCounter()).snapshot();
+    }
+
     public synchronized void put(K key, V value){
-        if(storage.size() == cap){
-            if(storage.containsKey(key)){
-                storage.put(key, value);
-                evictionPolicy.accessed(key);
+        storage.checkFits(key, value); // before the writer or any eviction sees it
+        if(writer != null){
+            writer.write(key, value); // the store gets the value even if the policy rejects it below
+        }
+        if(!storage.hasRoom(key, value, cap)){
+            if(!storage.containsKey(key) && !evictionPolicy.admit(key)){
+                if(evictionListener != null) evictionListener.evicted(key, value);
+                return; // policy rejected the new key, keep the resident ones
             }
-            else{
-                K evictKey = evictionPolicy.evictKey();
-                if(evictKey != null){
-                    storage.remove(evictKey);
-                    evictionPolicy.accessed(key);
-                    storage.put(key, value);
+            // A byte-bounded storage may need more than one eviction to fit a large value
+            Predicate<K> evictable = storage.evictable(key, value);
+            while(!storage.hasRoom(key, value, cap)){
+                K evictKey = evictable == null ? evictionPolicy.evictKey() : evictionPolicy.evictKey(evictable);
+                if(evictKey == null){
+                    throw new IllegalStateException("Cache is empty and the entry for " + key + " still does not fit");
                 }
-                else{
-                    System.out.println("Cap is zero");
-                }              
+                if(evictionListener != null){
+                    V evicted = storage.get(evictKey);
+                    if(evicted != null) evictionListener.evicted(evictKey, evicted);
+                }
+                storage.remove(evictKey);
+                if(statsCounter != null) statsCounter.recordRemoval(RemovalCause.SIZE);
             }
         }
-        else{
-            storage.put(key, value);
-            evictionPolicy.accessed(key);
-
-        }
+        if(statsCounter != null && storage.containsKey(key)) statsCounter.recordRemoval(RemovalCause.REPLACED);
+        storage.put(key, value);
+        evictionPolicy.accessed(key);
     }
 
     public synchronized V get(K key){
         V v = storage.get(key);
         if(v != null){
+            if(statsCounter != null) statsCounter.recordHits(1);
             evictionPolicy.accessed(key);
             return v;
         }
-        else return null;
-    }
-
-    
-}
-interface Storage<K,V>{
-    abstract public void put(K key, V value);
-    abstract public V get(K key);
-    abstract public int size();
-    abstract public void remove(K key);
-    abstract public boolean containsKey(K key);
-
-}
-class MapStorage<K,V> implements Storage<K,V>{
-    Map<K,V> map;
-    int cap;
-
-    MapStorage(int cap){
-        map = new HashMap<>();
-        this.cap = cap;
-    }
-    public void put(K key, V value){
-        map.put(key, value);
-    }
-
-    public V get(K key){
-        if(!map.containsKey(key)) return null;
-        else return map.get(key);
-    }
-
-    public int size(){
-        return map.size();
-    }
-    public void remove(K k){
-        map.remove(k);
+        else{
+            if(statsCounter != null) statsCounter.recordMisses(1);
+            return null;
+        }
     }
 
-    public boolean containsKey(K key){
-        return map.containsKey(key);
+    // Total weight of the cached entries (entry count for plain storages, bytes for off-heap)
+    public synchronized long weightedSize(){
+        return storage.weightedSize();
     }
 
     
-
 }
 
-interface EvictionPolicy<K, V>{
-    public void accessed(K key);
-    public K evictKey();
-    
-}
-
-class LRUEvictionPolicy<K,V> implements EvictionPolicy<K,V>{
-
-    LinkedHashMap<K,V> linkedHashMap;
-
-    LRUEvictionPolicy(){
-        linkedHashMap = new LinkedHashMap<>();
-    }
-    @Override
-    public void accessed(K key) {
-        if(linkedHashMap.containsKey(key)){
-            V v = linkedHashMap.get(key);
-            linkedHashMap.remove(key);
-            linkedHashMap.put(key, v);
-        }
-        else{
-            linkedHashMap.put(key, null);
-        }
-    }
-
-    @Override
-    public K evictKey() {
-        if(linkedHashMap.size() == 0){
-            return  null;
-        }
-        else{
-            K k =  linkedHashMap.keySet().iterator().next();
-            linkedHashMap.remove(k);
-            return k;
-        }
-    }
-    
+interface EvictionListener<K,V>{
+    public void evicted(K key, V value);
 }
 
  class CacheDriver{
 
     public static void main(String[] args) {
         Storage<String, Integer> storage = new MapStorage<String, Integer>(5);
-        EvictionPolicy evictionPolicy = new LRUEvictionPolicy<String, Integer>();
+        EvictionPolicy<String, Integer> evictionPolicy = new LRUEvictionPolicy<String, Integer>();
         LruCache<String, Integer> cache = new LruCache<String, Integer>(storage, evictionPolicy, 3);
 
         cache.put("k1", 1);
@@ -149,8 +123,14 @@ class LRUEvictionPolicy<K,V> implements EvictionPolicy<K,V>{
         cache.get("k5");
         cache.put("k6", 6);
         System.out.println("Now "+cache.get("k4"));
+
+        StatsCounter counter = new StatsCounter();
+        cache.setStatsCounter(counter);
+        cache.get("k1");
+        cache.get("k2");
+        cache.put("k7", 7);
+        System.out.println(cache.stats()); // 1 hit, 1 miss, 1 SIZE removal
     }
 
 }
 
-
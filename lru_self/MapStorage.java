@@ -0,0 +1,35 @@
+package lru_self;
+
+import java.util.*;
+
+class MapStorage<K,V> implements Storage<K,V>{
+    Map<K,V> map;
+    int cap;
+
+    MapStorage(int cap){
+        map = new HashMap<>();
+        this.cap = cap;
+    }
+    public void put(K key, V value){
+        map.put(key, value);
+    }
+
+    public V get(K key){
+        if(!map.containsKey(key)) return null;
+        else return map.get(key);
+    }
+
+    public int size(){
+        return map.size();
+    }
+    public void remove(K k){
+        map.remove(k);
+    }
+
+    public boolean containsKey(K key){
+        return map.containsKey(key);
+    }
+
+    
+
+}
@@ -0,0 +1,330 @@
+package lru_self;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Predicate;
+
+// Storage that keeps values in direct ByteBuffers, so large values add nothing to GC work.
+// Memory is carved into fixed size slabs; each slab serves one chunk size class (64 B, 128 B, ...
+// up to the slab size), memcached style. A slab whose chunks are all free goes back to the
+// shared pool, so the class mix can follow the workload. On heap only the key index remains,
+// mapping key -> (slab, offset, length) packed into one long.
+// The limit is maxBytes of off-heap memory, hasRoom ignores LruCache's entry count cap.
+// When the value's class is full, evictable steers LruCache's evictions: to the coldest entries
+// of that class, or, for a class that owns no slab yet, to the entries of the slab with the
+// fewest live chunks, which then goes back to the pool (memcached's slab reassignment).
+// Not thread-safe, LruCache serializes access.
+class OffHeapStorage<K,V> implements Storage<K,V>{
+    static final int MIN_CHUNK = 64;
+
+    Map<K,Long> index;
+    Serializer<V> serializer;
+    int slabSize;
+    Slab[] slabs;
+    Deque<Slab> freeSlabs;
+    SizeClass[] classes;
+    long usedBytes;     // bytes of chunks handed out to live entries
+    long valueBytes;    // serialized bytes of live entries
+
+    OffHeapStorage(long maxBytes, int slabSize, Serializer<V> serializer){
+        if(slabSize < MIN_CHUNK || Integer.bitCount(slabSize) != 1 || slabSize > (1 << 23)){
+            throw new IllegalArgumentException("Slab size must be a power of two between 64 B and 8 MB");
+        }
+        long slabCount = maxBytes / slabSize;
+        if(slabCount < 1 || slabCount > (1 << 16)){
+            throw new IllegalArgumentException("maxBytes must hold between 1 and 65536 slabs");
+        }
+        this.index = new HashMap<>();
+        this.serializer = serializer;
+        this.slabSize = slabSize;
+        this.slabs = new Slab[(int) slabCount];
+        this.freeSlabs = new ArrayDeque<>();
+        for(int i = 0; i < slabs.length; i++){
+            slabs[i] = new Slab(i, slabSize);
+            freeSlabs.add(slabs[i]);
+        }
+        int classCount = Integer.numberOfTrailingZeros(slabSize) - Integer.numberOfTrailingZeros(MIN_CHUNK) + 1;
+        this.classes = new SizeClass[classCount];
+        for(int i = 0; i < classCount; i++){
+            classes[i] = new SizeClass(MIN_CHUNK << i, slabs, freeSlabs);
+        }
+    }
+
+    public void put(K key, V value){
+        int length = serializer.sizeOf(value);
+        SizeClass sizeClass = classFor(length);
+        long location = sizeClass.allocate();
+        if(location < 0 && replacesIn(key, sizeClass)){
+            remove(key); // class full: reuse the replaced chunk, the old value is lost if the write fails
+            location = sizeClass.allocate();
+        }
+        if(location < 0){
+            throw new IllegalStateException("Off-heap storage is full, check hasRoom before put");
+        }
+        ByteBuffer out = slabs[slabOf(location)].buffer.duplicate();
+        out.position(offsetOf(location));
+        try{
+            serializer.write(value, out);
+        }
+        catch(RuntimeException | Error e){
+            sizeClass.free(location); // give the chunk back, or its slab could never be reassigned
+            throw e;
+        }
+        remove(key); // only now, so in the common case a failing write keeps the old value
+        index.put(key, location | length);
+        usedBytes += sizeClass.chunkSize;
+        valueBytes += length;
+    }
+
+    public V get(K key){
+        Long location = index.get(key);
+        if(location == null) return null;
+        ByteBuffer in = slabs[slabOf(location)].buffer.duplicate();
+        int offset = offsetOf(location);
+        in.position(offset).limit(offset + lengthOf(location));
+        return serializer.read(in);
+    }
+
+    public int size(){
+        return index.size();
+    }
+
+    public void remove(K key){
+        Long location = index.remove(key);
+        if(location == null) return;
+        int length = lengthOf(location);
+        SizeClass sizeClass = classFor(length);
+        sizeClass.free(location);
+        usedBytes -= sizeClass.chunkSize;
+        valueBytes -= length;
+    }
+
+    public boolean containsKey(K key){
+        return index.containsKey(key);
+    }
+
+    @Override
+    public void checkFits(K key, V value){
+        classFor(serializer.sizeOf(value));
+    }
+
+    // The chunk of a replaced value of the same class counts as free
+    @Override
+    public boolean hasRoom(K key, V value, int cap){
+        SizeClass sizeClass = classFor(serializer.sizeOf(value));
+        return sizeClass.canAllocate() || replacesIn(key, sizeClass);
+    }
+
+    @Override
+    public Predicate<K> evictable(K key, V value){
+        SizeClass sizeClass = classFor(serializer.sizeOf(value));
+        if(sizeClass.slabCount > 0){
+            return k -> classOf(k) == sizeClass;
+        }
+        Slab victim = null;
+        for(Slab slab : slabs){
+            if(victim == null || slab.liveChunks < victim.liveChunks){
+                victim = slab;
+            }
+        }
+        int id = victim.id;
+        return k -> {
+            Long location = index.get(k);
+            return location != null && slabOf(location) == id;
+        };
+    }
+
+    // Off-heap bytes held by live entries, including chunk rounding
+    @Override
+    public long weightedSize(){
+        return usedBytes;
+    }
+
+    public long usedBytes(){
+        return usedBytes;
+    }
+
+    public long valueBytes(){
+        return valueBytes;
+    }
+
+    public long capacityBytes(){
+        return (long) slabs.length * slabSize;
+    }
+
+    boolean replacesIn(K key, SizeClass sizeClass){
+        return classOf(key) == sizeClass;
+    }
+
+    // null if key is not stored
+    SizeClass classOf(K key){
+        Long location = index.get(key);
+        return location == null ? null : classFor(lengthOf(location));
+    }
+
+    SizeClass classFor(int length){
+        if(length > slabSize){
+            throw new IllegalArgumentException("Value of " + length + " bytes is larger than the slab size " + slabSize);
+        }
+        int chunk = Math.max(MIN_CHUNK, Integer.highestOneBit(Math.max(1, length - 1)) << 1);
+        return classes[Integer.numberOfTrailingZeros(chunk) - Integer.numberOfTrailingZeros(MIN_CHUNK)];
+    }
+
+    // location layout: slab (16 bits) | offset (24 bits) | length (24 bits)
+    static long location(int slab, int offset){
+        return ((long) slab << 48) | ((long) offset << 24);
+    }
+    static int slabOf(long location){
+        return (int) (location >>> 48);
+    }
+    static int offsetOf(long location){
+        return (int) (location >>> 24) & 0xffffff;
+    }
+    static int lengthOf(long location){
+        return (int) location & 0xffffff;
+    }
+
+    static class Slab{
+        final int id;
+        final int slabSize;
+        ByteBuffer buffer;     // allocated on first use, kept when the slab returns to the pool
+        int chunkSize;
+        int bumpChunk;         // chunks [0, bumpChunk) have been handed out at least once
+        int[] freeChunks;      // chunk indexes returned since the slab was assigned
+        int freeCount;
+        int liveChunks;
+
+        Slab(int id, int slabSize){
+            this.id = id;
+            this.slabSize = slabSize;
+        }
+
+        void assign(int chunkSize){
+            if(buffer == null){
+                buffer = ByteBuffer.allocateDirect(slabSize);
+            }
+            this.chunkSize = chunkSize;
+            this.bumpChunk = 0;
+            this.freeChunks = new int[slabSize / chunkSize];
+            this.freeCount = 0;
+            this.liveChunks = 0;
+        }
+
+        boolean isFull(){
+            return freeCount == 0 && bumpChunk == slabSize / chunkSize;
+        }
+
+        int allocateChunk(){
+            liveChunks++;
+            int chunk = freeCount > 0 ? freeChunks[--freeCount] : bumpChunk++;
+            return chunk * chunkSize;
+        }
+
+        void freeChunk(int offset){
+            liveChunks--;
+            freeChunks[freeCount++] = offset / chunkSize;
+        }
+    }
+
+    static class SizeClass{
+        final int chunkSize;
+        final Slab[] slabs;
+        final Deque<Slab> freeSlabs;    // pool shared by all size classes
+        final Set<Slab> partial = new LinkedHashSet<>(); // assigned slabs with at least one free chunk
+        int slabCount;                  // slabs assigned to this class
+
+        SizeClass(int chunkSize, Slab[] slabs, Deque<Slab> freeSlabs){
+            this.chunkSize = chunkSize;
+            this.slabs = slabs;
+            this.freeSlabs = freeSlabs;
+        }
+
+        boolean canAllocate(){
+            return !partial.isEmpty() || !freeSlabs.isEmpty();
+        }
+
+        long allocate(){
+            Slab slab;
+            if(!partial.isEmpty()){
+                slab = partial.iterator().next();
+            }
+            else if(!freeSlabs.isEmpty()){
+                slab = freeSlabs.poll();
+                slab.assign(chunkSize);
+                slabCount++;
+                partial.add(slab);
+            }
+            else{
+                return -1;
+            }
+            int offset = slab.allocateChunk();
+            if(slab.isFull()){
+                partial.remove(slab);
+            }
+            return location(slab.id, offset);
+        }
+
+        void free(long location){
+            Slab slab = slabs[slabOf(location)];
+            boolean wasFull = slab.isFull();
+            slab.freeChunk(offsetOf(location));
+            if(slab.liveChunks == 0){
+                partial.remove(slab);
+                slabCount--;
+                freeSlabs.push(slab); // empty slab can serve any size class again
+            }
+            else if(wasFull){
+                partial.add(slab);
+            }
+        }
+    }
+}
+
+class OffHeapStorageDriver{
+
+    public static void main(String[] args) {
+        // 4 MB off-heap in 1 MB slabs, values of 1-8 KB
+        OffHeapStorage<Integer, byte[]> storage = new OffHeapStorage<>(4 << 20, 1 << 20, new ByteArraySerializer());
+        LruCache<Integer, byte[]> cache = new LruCache<>(storage, new LRUEvictionPolicy<Integer, byte[]>(), Integer.MAX_VALUE);
+        int[] evictions = new int[1];
+        cache.setEvictionListener((key, value) -> evictions[0]++);
+        Random random = new Random(1);
+        for(int i = 0; i < 5_000; i++){
+            byte[] value = new byte[1024 + random.nextInt(7 * 1024)];
+            Arrays.fill(value, (byte) i);
+            cache.put(i, value);
+        }
+        byte[] last = cache.get(4_999);
+        System.out.println("Entries kept: " + storage.size() + ", first still cached: " + (cache.get(0) != null));
+        System.out.println("Last value intact: " + (last != null && last[0] == (byte) 4_999));
+        System.out.println("Off-heap used " + storage.usedBytes() + " of " + storage.capacityBytes()
+                + " bytes (" + storage.valueBytes() + " bytes of values)");
+
+        // Replacing a value with one of the same class reuses its chunk
+        evictions[0] = 0;
+        cache.put(4_999, new byte[last.length]);
+        System.out.println("Evictions for a same-class replace: " + evictions[0]); // 0
+
+        // A 200 B value has no slab yet: one slab is reassigned, the rest of the cache stays
+        int before = storage.size();
+        cache.put(-1, new byte[200]);
+        System.out.println("Evictions for the first small value: " + evictions[0] + " of " + before + " entries");
+
+        // A failing serializer gives its chunk back
+        OffHeapStorage<Integer, byte[]> failing = new OffHeapStorage<>(1 << 20, 1 << 20, new ByteArraySerializer(){
+            @Override
+            public void write(byte[] value, ByteBuffer out){
+                throw new IllegalStateException("cannot encode");
+            }
+        });
+        for(int i = 0; i < 100; i++){
+            try{
+                failing.put(i, new byte[100]);
+            }
+            catch(IllegalStateException e){
+                // expected
+            }
+        }
+        System.out.println("Free slabs after 100 failed writes: " + failing.freeSlabs.size() + " of 1");
+    }
+}
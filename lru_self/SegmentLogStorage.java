@@ -0,0 +1,261 @@
+package lru_self;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+// Disk resident storage: an append-only log of memory-mapped segment files. Every put appends a
+// (key length, value length, key, value) record to the active segment, and the on-heap index
+// keeps one long per key, segment id << 32 | offset. Overwritten and removed records become
+// garbage. When a new segment would exceed maxBytes, the sealed segment with the least live data
+// is compacted into the active one if at most half of it is live and that fits, otherwise the
+// oldest segment is dropped with everything still in it (FIFO eviction at the disk tier).
+// hasRoom is always true, the log makes room by itself. The directory is a scratch area, its
+// segment files are deleted on open and on close. Not thread-safe, callers serialize access.
+class SegmentLogStorage<K,V> implements Storage<K,V>, Closeable{
+    static final int HEADER = 8;
+
+    static class Segment{
+        final int id;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int writeOffset;
+        long liveBytes;
+
+        Segment(int id, Path path, MappedByteBuffer buffer){
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    Path directory;
+    int segmentSize;
+    int maxSegments;
+    Serializer<K> keySerializer;
+    Serializer<V> valueSerializer;
+    Map<K,Long> index;
+    LinkedHashMap<Integer, Segment> segments;   // oldest first, the last one is active
+    Segment active;
+    int nextSegmentId;
+    long compactions;
+    long droppedEntries;
+
+    SegmentLogStorage(Path directory, long maxBytes, int segmentSize, Serializer<K> keySerializer,
+                      Serializer<V> valueSerializer) throws IOException{
+        if(segmentSize <= HEADER || maxBytes / segmentSize < 2){
+            throw new IllegalArgumentException("maxBytes must hold at least two segments");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxBytes / segmentSize);
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.index = new HashMap<>();
+        this.segments = new LinkedHashMap<>();
+        deleteSegmentFiles();
+        this.active = newSegment();
+    }
+
+    public void put(K key, V value){
+        int keyLength = keySerializer.sizeOf(key);
+        int valueLength = valueSerializer.sizeOf(value);
+        int length = HEADER + keyLength + valueLength;
+        if(length > segmentSize){
+            throw new IllegalArgumentException("Record of " + length + " bytes is larger than the segment size " + segmentSize);
+        }
+        if(segmentSize - active.writeOffset < length){
+            roll(length);
+        }
+        ByteBuffer out = active.buffer.duplicate();
+        out.position(active.writeOffset);
+        out.putInt(keyLength).putInt(valueLength);
+        keySerializer.write(key, out);
+        valueSerializer.write(value, out);
+        link(key, active, active.writeOffset, length);
+    }
+
+    public V get(K key){
+        Long location = index.get(key);
+        if(location == null) return null;
+        ByteBuffer in = segments.get(segmentOf(location)).buffer.duplicate();
+        int offset = offsetOf(location);
+        int keyLength = in.getInt(offset);
+        int valueLength = in.getInt(offset + 4);
+        int valueOffset = offset + HEADER + keyLength;
+        in.position(valueOffset).limit(valueOffset + valueLength);
+        return valueSerializer.read(in);
+    }
+
+    public int size(){
+        return index.size();
+    }
+
+    public void remove(K key){
+        Long location = index.remove(key);
+        if(location != null){
+            Segment segment = segments.get(segmentOf(location));
+            segment.liveBytes -= recordLength(segment.buffer, offsetOf(location));
+        }
+    }
+
+    public boolean containsKey(K key){
+        return index.containsKey(key);
+    }
+
+    @Override
+    public boolean hasRoom(K key, V value, int cap){
+        return true;
+    }
+
+    // Bytes of live records on disk
+    @Override
+    public long weightedSize(){
+        long live = 0;
+        for(Segment segment : segments.values()){
+            live += segment.liveBytes;
+        }
+        return live;
+    }
+
+    public long compactions(){
+        return compactions;
+    }
+
+    public long droppedEntries(){
+        return droppedEntries;
+    }
+
+    public void close() throws IOException{
+        index.clear();
+        segments.clear();
+        deleteSegmentFiles();
+    }
+
+    // Seals the active segment and opens a new one, reclaiming a segment if over maxBytes.
+    // Compaction leaves reserve bytes free in the new segment for the record being put.
+    void roll(int reserve){
+        active = newSegment();
+        while(segments.size() > maxSegments){
+            Segment victim = null;
+            for(Segment segment : segments.values()){
+                if(segment != active && (victim == null || segment.liveBytes < victim.liveBytes)){
+                    victim = segment;
+                }
+            }
+            // Compacting a mostly live segment frees little and just rewrites it, drop instead
+            if(victim.liveBytes <= segmentSize / 2 && victim.liveBytes <= segmentSize - active.writeOffset - reserve){
+                compact(victim);
+            }
+            else{
+                drop(segments.values().iterator().next());
+            }
+        }
+    }
+
+    // Copies the live records of segment into the active one and deletes it
+    void compact(Segment segment){
+        ByteBuffer in = segment.buffer.duplicate();
+        int offset = 0;
+        while(offset < segment.writeOffset){
+            int length = recordLength(in, offset);
+            K key = readKey(in, offset);
+            Long location = index.get(key);
+            if(location != null && location == location(segment.id, offset)){
+                ByteBuffer record = in.duplicate();
+                record.position(offset).limit(offset + length);
+                ByteBuffer out = active.buffer.duplicate();
+                out.position(active.writeOffset);
+                out.put(record);
+                link(key, active, active.writeOffset, length);
+            }
+            offset += length;
+        }
+        compactions++;
+        delete(segment);
+    }
+
+    // Drops the segment and every entry that still lives in it
+    void drop(Segment segment){
+        ByteBuffer in = segment.buffer.duplicate();
+        int offset = 0;
+        while(offset < segment.writeOffset){
+            K key = readKey(in, offset);
+            Long location = index.get(key);
+            if(location != null && location == location(segment.id, offset)){
+                index.remove(key);
+                droppedEntries++;
+            }
+            offset += recordLength(in, offset);
+        }
+        delete(segment);
+    }
+
+    void link(K key, Segment segment, int offset, int length){
+        Long old = index.put(key, location(segment.id, offset));
+        if(old != null){
+            Segment oldSegment = segments.get(segmentOf(old));
+            oldSegment.liveBytes -= recordLength(oldSegment.buffer, offsetOf(old));
+        }
+        segment.writeOffset = offset + length;
+        segment.liveBytes += length;
+    }
+
+    Segment newSegment(){
+        int id = nextSegmentId++;
+        Path path = directory.resolve(String.format("segment-%08d.log", id));
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            // The mapping stays valid after the channel is closed
+            Segment segment = new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+            segments.put(id, segment);
+            return segment;
+        }
+        catch(IOException e){
+            throw new UncheckedIOException("Could not create segment " + path, e);
+        }
+    }
+
+    void delete(Segment segment){
+        segments.remove(segment.id);
+        try{
+            Files.deleteIfExists(segment.path); // the mapping itself is released by the GC
+        }
+        catch(IOException e){
+            throw new UncheckedIOException("Could not delete segment " + segment.path, e);
+        }
+    }
+
+    void deleteSegmentFiles() throws IOException{
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.log")){
+            for(Path file : files){
+                Files.delete(file);
+            }
+        }
+    }
+
+    K readKey(ByteBuffer in, int offset){
+        ByteBuffer key = in.duplicate();
+        key.position(offset + HEADER).limit(offset + HEADER + in.getInt(offset));
+        return keySerializer.read(key);
+    }
+
+    static int recordLength(ByteBuffer in, int offset){
+        return HEADER + in.getInt(offset) + in.getInt(offset + 4);
+    }
+
+    static long location(int segment, int offset){
+        return ((long) segment << 32) | offset;
+    }
+    static int segmentOf(long location){
+        return (int) (location >>> 32);
+    }
+    static int offsetOf(long location){
+        return (int) location;
+    }
+}
@@ -0,0 +1,10 @@
+package lru_self;
+
+import java.nio.ByteBuffer;
+
+// Turns values into bytes and back, so they can live outside the Java heap
+interface Serializer<V>{
+    public int sizeOf(V value);
+    public void write(V value, ByteBuffer out);   // writes exactly sizeOf(value) bytes at out's position
+    public V read(ByteBuffer in);                 // in holds exactly the bytes written for one value
+}
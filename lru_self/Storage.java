@@ -0,0 +1,31 @@
+package lru_self;
+
+import java.util.function.Predicate;
+
+interface Storage<K,V>{
+    abstract public void put(K key, V value);
+    abstract public V get(K key);
+    abstract public int size();
+    abstract public void remove(K key);
+    abstract public boolean containsKey(K key);
+
+    // Whether put(key, value) fits without evicting anything first. Entry-count storages are full
+    // at cap entries; replacing a key that is already stored always fits.
+    default public boolean hasRoom(K key, V value, int cap){
+        return containsKey(key) || size() < cap;
+    }
+
+    // Throws IllegalArgumentException if the entry would not fit even into an empty storage
+    default public void checkFits(K key, V value){
+    }
+
+    // The keys whose eviction can make room for put(key, value), or null if any key can
+    default public Predicate<K> evictable(K key, V value){
+        return null;
+    }
+
+    default public long weightedSize(){
+        return size();
+    }
+
+}
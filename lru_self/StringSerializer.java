@@ -0,0 +1,18 @@
+package lru_self;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+class StringSerializer implements Serializer<String>{
+    public int sizeOf(String value){
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+    public void write(String value, ByteBuffer out){
+        out.put(value.getBytes(StandardCharsets.UTF_8));
+    }
+    public String read(ByteBuffer in){
+        byte[] bytes = new byte[in.remaining()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,83 @@
+package lru_self;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+// Two tier cache: an in-memory LruCache (L1) in front of a disk resident SegmentLogStorage (L2).
+// The tiers are exclusive. Entries evicted from L1 are demoted to L2, an L2 hit moves the entry
+// back up to L1, and a put replaces the key in L1 and drops any older copy from L2.
+// So a working set larger than the heap is still served from local disk instead of the backend.
+class TieredCache<K,V>{
+    LruCache<K,V> l1;
+    SegmentLogStorage<K,V> l2;
+    long l1Hits;
+    long l2Hits;
+    long misses;
+
+    TieredCache(LruCache<K,V> l1, SegmentLogStorage<K,V> l2){
+        this.l1 = l1;
+        this.l2 = l2;
+        l1.setEvictionListener(l2::put); // called under the L1 lock, while we hold ours
+    }
+
+    public synchronized V get(K key){
+        V value = l1.get(key);
+        if(value != null){
+            l1Hits++;
+            return value;
+        }
+        value = l2.get(key);
+        if(value == null){
+            misses++;
+            return null;
+        }
+        l2Hits++;
+        l2.remove(key);
+        l1.put(key, value); // may demote the L1 victim in its place
+        return value;
+    }
+
+    public synchronized void put(K key, V value){
+        l2.remove(key);
+        l1.put(key, value);
+    }
+
+    public synchronized String toString(){
+        return "l1Hits=" + l1Hits + " l2Hits=" + l2Hits + " misses=" + misses + " l2Entries=" + l2.size()
+                + " l2Compactions=" + l2.compactions() + " l2Dropped=" + l2.droppedEntries();
+    }
+}
+
+class TieredCacheDriver{
+
+    public static void main(String[] args) throws IOException {
+        // 20k keys of 2 KB values (~40 MB), 2k fit in L1, the rest goes to a 64 MB L2 on disk
+        Path directory = Files.createTempDirectory("tiered-cache");
+        SegmentLogStorage<String, byte[]> l2 = new SegmentLogStorage<>(directory, 64 << 20, 4 << 20,
+                new StringSerializer(), new ByteArraySerializer());
+        LruCache<String, byte[]> l1 = new LruCache<>(new MapStorage<String, byte[]>(0),
+                new LRUEvictionPolicy<String, byte[]>(), 2_000);
+        TieredCache<String, byte[]> cache = new TieredCache<>(l1, l2);
+
+        Random random = new Random(3);
+        long start = System.nanoTime();
+        int corrupt = 0;
+        for(int i = 0; i < 200_000; i++){
+            int id = (int) (20_000 * Math.pow(random.nextDouble(), 2)); // skewed towards low ids
+            String key = "key" + id;
+            byte[] value = cache.get(key);
+            if(value == null){
+                value = new byte[2048];           // "remote backend" load
+                Arrays.fill(value, (byte) id);
+                cache.put(key, value);
+            }
+            else if(value[0] != (byte) id || value[2047] != (byte) id){
+                corrupt++;
+            }
+        }
+        System.out.println(cache + " corrupt=" + corrupt + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        l2.close();
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,31 @@
+package lru_self;
+
+// Adapts lru.WTinyLfuEvictionPolicy to this package's EvictionPolicy, so LruCache can use
+// W-TinyLFU admission without a second copy of the sketch and queues.
+class WTinyLfuEvictionPolicy<K,V> implements EvictionPolicy<K,V>{
+
+    lru.WTinyLfuEvictionPolicy<K> delegate;
+
+    WTinyLfuEvictionPolicy(int cap){
+        delegate = new lru.WTinyLfuEvictionPolicy<>(cap);
+    }
+
+    WTinyLfuEvictionPolicy(int cap, double windowRatio){
+        delegate = new lru.WTinyLfuEvictionPolicy<>(cap, windowRatio);
+    }
+
+    @Override
+    public void accessed(K key) {
+        delegate.keyAccessed(key);
+    }
+
+    @Override
+    public K evictKey() {
+        return delegate.evictKey();
+    }
+
+    @Override
+    public boolean admit(K candidate) {
+        return delegate.admit(candidate);
+    }
+}
@@ -0,0 +1,6 @@
+package lru_self;
+
+// Weighs an entry, e.g. its size in bytes. Must give the same weight for the same key and value.
+interface Weigher<K,V>{
+    public int weigh(K key, V value);
+}
@@ -0,0 +1,106 @@
+package lru_self;
+
+// Wraps a storage and bounds it by the total weight of its entries instead of their count.
+// hasRoom answers whether the new entry fits once the replaced value (if any) is subtracted,
+// so LruCache keeps evicting until the whole cache fits maxWeight.
+class WeightedStorage<K,V> implements Storage<K,V>{
+    Storage<K,V> storage;
+    Weigher<K,V> weigher;
+    long maxWeight;
+    long weightedSize;
+
+    WeightedStorage(Storage<K,V> storage, Weigher<K,V> weigher, long maxWeight){
+        if(maxWeight <= 0){
+            throw new IllegalArgumentException("Max weight must be greater than zero");
+        }
+        this.storage = storage;
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+    }
+
+    public void put(K key, V value){
+        int weight = checkWeight(key, value);
+        V old = storage.get(key);
+        if(old != null){
+            weightedSize -= weigh(key, old);
+        }
+        storage.put(key, value);
+        weightedSize += weight;
+    }
+
+    public V get(K key){
+        return storage.get(key);
+    }
+
+    public int size(){
+        return storage.size();
+    }
+
+    public void remove(K key){
+        V old = storage.get(key);
+        if(old != null){
+            weightedSize -= weigh(key, old);
+            storage.remove(key);
+        }
+    }
+
+    public boolean containsKey(K key){
+        return storage.containsKey(key);
+    }
+
+    @Override
+    public void checkFits(K key, V value){
+        checkWeight(key, value);
+    }
+
+    @Override
+    public boolean hasRoom(K key, V value, int cap){
+        V old = storage.get(key);
+        long after = weightedSize + weigh(key, value) - (old != null ? weigh(key, old) : 0);
+        return after <= maxWeight;
+    }
+
+    @Override
+    public long weightedSize(){
+        return weightedSize;
+    }
+
+    int checkWeight(K key, V value){
+        int weight = weigh(key, value);
+        if(weight > maxWeight){
+            throw new IllegalArgumentException("Entry weight " + weight + " exceeds the max weight " + maxWeight);
+        }
+        return weight;
+    }
+
+    int weigh(K key, V value){
+        int weight = weigher.weigh(key, value);
+        if(weight < 0){
+            throw new IllegalArgumentException("Weigher returned a negative weight");
+        }
+        return weight;
+    }
+}
+
+class WeightedCacheDriver{
+
+    public static void main(String[] args) {
+        // 10 KB budget, values weighed by their length
+        LruCache<String, byte[]> cache = new LruCache<>(new MapStorage<String, byte[]>(0),
+                new LRUEvictionPolicy<String, byte[]>(), 10_000, (key, value) -> value.length);
+        cache.put("small", new byte[1_000]);
+        cache.put("medium", new byte[4_000]);
+        cache.put("large", new byte[5_000]);
+        System.out.println("Weighted size " + cache.weightedSize());   // 10000
+        cache.get("small");
+        cache.put("huge", new byte[8_000]);                               // evicts medium and large
+        System.out.println("Weighted size " + cache.weightedSize() + ", small kept: " + (cache.get("small") != null)
+                + ", medium kept: " + (cache.get("medium") != null));
+        try{
+            cache.put("too-big", new byte[20_000]);
+        }
+        catch(IllegalArgumentException e){
+            System.out.println(e.getMessage() + ", still cached: " + cache.weightedSize()); // 9000
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package simulator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+// Compact binary trace: big-endian 8-byte keys back to back, read through a 64 KB buffer
+final class BinaryTrace implements TraceSource {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    BinaryTrace(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocateDirect(1 << 16);
+        buffer.flip();
+    }
+
+    @Override
+    public int read(long[] keys) throws IOException {
+        int count = 0;
+        while (count < keys.length) {
+            if (buffer.remaining() < Long.BYTES) {
+                buffer.compact();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0 && buffer.remaining() < Long.BYTES) {
+                    break; // a trailing partial key is ignored
+                }
+                continue;
+            }
+            keys[count++] = buffer.getLong();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Writes source out as a binary trace and returns the number of keys written
+    static long write(TraceSource source, Path file) throws IOException {
+        long total = 0;
+        long[] keys = new long[8192];
+        ByteBuffer out = ByteBuffer.allocateDirect(keys.length * Long.BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int count;
+            while ((count = source.read(keys)) > 0) {
+                out.clear();
+                out.asLongBuffer().put(keys, 0, count);
+                out.limit(count * Long.BYTES);
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                total += count;
+            }
+        }
+        return total;
+    }
+}
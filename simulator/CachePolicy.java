@@ -0,0 +1,9 @@
+package simulator;
+
+// One cache under simulation: only keys are tracked, values do not matter for hit ratios.
+// Adapters for the lru and lru_self policies are made by lru.CachePolicies and
+// lru_self.CachePolicies.
+public interface CachePolicy {
+    // Records an access to key, admitting it on a miss; true on a hit
+    boolean access(long key);
+}
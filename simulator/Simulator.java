@@ -0,0 +1,144 @@
+package simulator;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.IntFunction;
+
+// Replays a trace through several policies at several capacities in one pass: every chunk of
+// keys read from the trace is fed to all (policy, capacity) pairs before the next one is read,
+// so the trace is streamed once, never held in memory. Prints the hit ratio curve of each policy
+// and its throughput, or CSV with --csv.
+//
+// Run: java simulator.Simulator [options] <trace>
+//   <trace>             file (.bin = binary, otherwise text) or synthetic spec, see Workloads
+//   --policies a,b,...  default lru,clock,wtinylfu,arc (see POLICIES)
+//   --capacities n,...  default 1000,10000,100000
+//   --csv               machine readable output
+// Or: java simulator.Simulator convert <trace> <out.bin>   to write any trace as a binary trace
+public class Simulator {
+    static final Map<String, IntFunction<CachePolicy>> POLICIES = new LinkedHashMap<>();
+
+    static {
+        POLICIES.put("lru", lru.CachePolicies::linkedLru);
+        POLICIES.put("clock", lru.CachePolicies::clock);
+        POLICIES.put("wtinylfu", lru.CachePolicies::wTinyLfu);
+        POLICIES.put("tinylfu", lru.CachePolicies::tinyLfu);
+        POLICIES.put("arc", lru_self.CachePolicies::arc);
+        POLICIES.put("self-lru", lru_self.CachePolicies::lru);
+        POLICIES.put("long-lru", lru_self.CachePolicies::longLru);
+    }
+
+    private static final int CHUNK = 4096;
+
+    // Outcome of one policy at one capacity
+    static final class Run {
+        final String policy;
+        final int capacity;
+        final CachePolicy cache;
+        long accesses;
+        long hits;
+        long nanos;
+
+        Run(String policy, int capacity) {
+            this.policy = policy;
+            this.capacity = capacity;
+            this.cache = POLICIES.get(policy).apply(capacity);
+        }
+
+        double hitRatio() {
+            return accesses == 0 ? 0 : (double) hits / accesses;
+        }
+
+        double opsPerSecond() {
+            return nanos == 0 ? 0 : accesses * 1e9 / nanos;
+        }
+    }
+
+    static List<Run> simulate(TraceSource trace, List<String> policies, int[] capacities) throws IOException {
+        List<Run> runs = new ArrayList<>();
+        for (String policy : policies) {
+            if (!POLICIES.containsKey(policy)) {
+                throw new IllegalArgumentException("Unknown policy " + policy + ", known: " + POLICIES.keySet());
+            }
+            for (int capacity : capacities) {
+                runs.add(new Run(policy, capacity));
+            }
+        }
+        long[] keys = new long[CHUNK];
+        int count;
+        while ((count = trace.read(keys)) > 0) {
+            for (Run run : runs) {
+                CachePolicy cache = run.cache;
+                long hits = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    if (cache.access(keys[i])) {
+                        hits++;
+                    }
+                }
+                run.nanos += System.nanoTime() - start;
+                run.hits += hits;
+                run.accesses += count;
+            }
+        }
+        return runs;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("convert")) {
+            try (TraceSource trace = TraceSource.open(args[1])) {
+                System.out.println("Wrote " + BinaryTrace.write(trace, Paths.get(args[2])) + " keys to " + args[2]);
+            }
+            return;
+        }
+        List<String> policies = Arrays.asList("lru", "clock", "wtinylfu", "arc");
+        int[] capacities = {1_000, 10_000, 100_000};
+        boolean csv = false;
+        String spec = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--policies":
+                    policies = Arrays.asList(args[++i].split(","));
+                    break;
+                case "--capacities":
+                    capacities = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--csv":
+                    csv = true;
+                    break;
+                default:
+                    spec = args[i];
+            }
+        }
+        if (spec == null) {
+            spec = "zipf:100000:0.9:2000000+scan:500000";
+        }
+        List<Run> runs;
+        try (TraceSource trace = TraceSource.open(spec)) {
+            runs = simulate(trace, policies, capacities);
+        }
+        if (csv) {
+            System.out.println("policy,capacity,accesses,hits,hit_ratio,ops_per_sec");
+            for (Run run : runs) {
+                System.out.printf(Locale.ROOT, "%s,%d,%d,%d,%.6f,%.0f%n", run.policy, run.capacity, run.accesses,
+                        run.hits, run.hitRatio(), run.opsPerSecond());
+            }
+            return;
+        }
+        System.out.println("Trace " + spec + ", " + (runs.isEmpty() ? 0 : runs.get(0).accesses) + " accesses");
+        System.out.printf("%-10s", "capacity");
+        for (String policy : policies) {
+            System.out.printf("%22s", policy);
+        }
+        System.out.println();
+        for (int c = 0; c < capacities.length; c++) {
+            System.out.printf("%-10d", capacities[c]);
+            for (int p = 0; p < policies.size(); p++) {
+                Run run = runs.get(p * capacities.length + c);
+                System.out.printf("%9.2f%% %7.2f Mop/s", 100 * run.hitRatio(), run.opsPerSecond() / 1e6);
+            }
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package simulator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+// A stream of accessed keys, read in chunks so traces of any length run in constant memory
+public interface TraceSource extends Closeable {
+    // Fills keys from the start and returns how many were read, 0 at the end of the trace
+    int read(long[] keys) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    // A file path (binary if it ends in .bin, text otherwise) or a synthetic spec, see Workloads
+    static TraceSource open(String spec) throws IOException {
+        if (Workloads.isSynthetic(spec)) {
+            return Workloads.parse(spec);
+        }
+        Path file = Paths.get(spec);
+        return spec.endsWith(".bin") ? new BinaryTrace(file) : new TextTrace(file);
+    }
+}
+
+// One access per line, the key is the first whitespace separated token: a decimal number, or
+// any other text that is hashed to a number. Blank lines and lines starting with # are skipped.
+final class TextTrace implements TraceSource {
+    private final BufferedReader reader;
+
+    TextTrace(Path file) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public int read(long[] keys) throws IOException {
+        int count = 0;
+        String line;
+        while (count < keys.length && (line = reader.readLine()) != null) {
+            int start = 0;
+            while (start < line.length() && Character.isWhitespace(line.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+                end++;
+            }
+            if (end > start && line.charAt(start) != '#') {
+                keys[count++] = parseKey(line, start, end);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    static long parseKey(CharSequence text, int start, int end) {
+        long value = 0;
+        boolean negative = text.charAt(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 18) {
+            return hash(text, start, end);
+        }
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return hash(text, start, end);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    // 64-bit FNV-1a, so distinct string keys practically never collide
+    private static long hash(CharSequence text, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
+
@@ -0,0 +1,171 @@
+package simulator;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+// Synthetic traces, generated on the fly so any length runs in constant memory. Specs:
+//   zipf:<keys>:<theta>:<length>   key i (0 is the most popular) with probability ~ 1/(i+1)^theta
+//   scan:<length>                  every key once, 0, 1, 2, ...
+//   loop:<keys>:<length>           0 .. keys-1 over and over
+// Parts joined with + are interleaved in blocks of 1000 accesses, e.g. zipf:...+scan:...
+// to put scans into a skewed workload; the trace ends when every part has ended.
+final class Workloads {
+    private static final int BLOCK = 1_000;
+
+    private Workloads() {
+    }
+
+    static boolean isSynthetic(String spec) {
+        return spec.startsWith("zipf:") || spec.startsWith("scan:") || spec.startsWith("loop:");
+    }
+
+    static TraceSource parse(String spec) {
+        String[] parts = spec.split("\\+");
+        if (parts.length > 1) {
+            TraceSource[] sources = new TraceSource[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                sources[i] = parse(parts[i]);
+            }
+            return new Interleaved(sources);
+        }
+        String[] fields = spec.split(":");
+        try {
+            switch (fields[0]) {
+                case "zipf":
+                    return new Zipf(Long.parseLong(fields[1]), Double.parseDouble(fields[2]), Long.parseLong(fields[3]), 42);
+                case "scan":
+                    return new Loop(Long.MAX_VALUE, Long.parseLong(fields[1]), 1L << 40);
+                case "loop":
+                    return new Loop(Long.parseLong(fields[1]), Long.parseLong(fields[2]), 1L << 41);
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException("Bad workload spec: " + spec);
+    }
+
+    // Zipfian keys with the generator of Gray et al., "Quickly Generating Billion-Record Synthetic
+    // Databases": O(keys) setup for the zeta constant, then O(1) per key. theta in (0, 1).
+    static final class Zipf implements TraceSource {
+        private final long keys;
+        private final double theta;
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+        private final SplittableRandom random;
+        private long remaining;
+
+        Zipf(long keys, double theta, long length, long seed) {
+            if (keys < 2 || theta <= 0 || theta >= 1) {
+                throw new IllegalArgumentException("Zipf needs at least 2 keys and theta in (0, 1)");
+            }
+            this.keys = keys;
+            this.theta = theta;
+            this.remaining = length;
+            this.random = new SplittableRandom(seed);
+            double zeta = 0;
+            for (long i = 1; i <= keys; i++) {
+                zeta += 1 / Math.pow(i, theta);
+            }
+            this.zetan = zeta;
+            this.alpha = 1 / (1 - theta);
+            double zeta2 = 1 + Math.pow(0.5, theta);
+            this.eta = (1 - Math.pow(2.0 / keys, 1 - theta)) / (1 - zeta2 / zetan);
+        }
+
+        @Override
+        public int read(long[] out) {
+            int count = (int) Math.min(out.length, remaining);
+            for (int i = 0; i < count; i++) {
+                double u = random.nextDouble();
+                double uz = u * zetan;
+                if (uz < 1) {
+                    out[i] = 0;
+                } else if (uz < 1 + Math.pow(0.5, theta)) {
+                    out[i] = 1;
+                } else {
+                    out[i] = Math.min(keys - 1, (long) (keys * Math.pow(eta * u - eta + 1, alpha)));
+                }
+            }
+            remaining -= count;
+            return count;
+        }
+    }
+
+    // Cycles through keys distinct keys starting at base; a scan is a loop that never comes back
+    static final class Loop implements TraceSource {
+        private final long keys;
+        private final long base;   // keeps scan and loop keys apart from each other and from zipf
+        private long remaining;
+        private long next;
+
+        Loop(long keys, long length, long base) {
+            if (keys < 1) {
+                throw new IllegalArgumentException("A loop needs at least one key");
+            }
+            this.keys = keys;
+            this.remaining = length;
+            this.base = base;
+        }
+
+        @Override
+        public int read(long[] out) {
+            int count = (int) Math.min(out.length, remaining);
+            for (int i = 0; i < count; i++) {
+                out[i] = base + next;
+                next = next + 1 == keys ? 0 : next + 1;
+            }
+            remaining -= count;
+            return count;
+        }
+    }
+
+    static final class Interleaved implements TraceSource {
+        private final TraceSource[] sources;
+        private final boolean[] ended;
+        private final long[] block = new long[BLOCK];
+        private int current;
+        private int offset;    // next unread key of block
+        private int filled;
+
+        Interleaved(TraceSource[] sources) {
+            this.sources = sources;
+            this.ended = new boolean[sources.length];
+        }
+
+        @Override
+        public int read(long[] out) throws IOException {
+            int count = 0;
+            while (count < out.length) {
+                if (offset == filled && !nextBlock()) {
+                    break;
+                }
+                int n = Math.min(out.length - count, filled - offset);
+                System.arraycopy(block, offset, out, count, n);
+                offset += n;
+                count += n;
+            }
+            return count;
+        }
+
+        // Reads the next block from the next source that has not ended
+        private boolean nextBlock() throws IOException {
+            for (int tried = 0; tried < sources.length; tried++) {
+                int source = current;
+                current = (current + 1) % sources.length;
+                if (ended[source]) {
+                    continue;
+                }
+                filled = sources[source].read(block);
+                offset = 0;
+                if (filled > 0) {
+                    return true;
+                }
+                ended[source] = true;
+            }
+            return false;
+        }
+    }
+}